@@ -26,7 +26,6 @@ import static com.google.android.setupcompat.util.ResultCodes.RESULT_SKIP;
 import static org.lineageos.setupwizard.SetupWizardApp.ACTION_ACCESSIBILITY_SETTINGS;
 import static org.lineageos.setupwizard.SetupWizardApp.ACTION_EMERGENCY_DIAL;
 import static org.lineageos.setupwizard.SetupWizardApp.ACTION_NEXT;
-import static org.lineageos.setupwizard.SetupWizardApp.ACTION_SETUP_COMPLETE;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_HAS_MULTIPLE_USERS;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_RESULT_CODE;
@@ -38,14 +37,12 @@ import android.annotation.Nullable;
 import android.app.Activity;
 import android.app.ActivityManager;
 import android.content.ActivityNotFoundException;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.res.TypedArray;
 import android.graphics.drawable.Drawable;
 import android.net.wifi.WifiManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
@@ -62,6 +59,11 @@ import com.google.android.setupdesign.GlifLayout;
 
 import org.lineageos.setupwizard.NavigationLayout.NavigationBarListener;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.WizardEventBus;
+import org.lineageos.setupwizard.wizardmanager.WizardComponentRegistry;
+import org.lineageos.setupwizard.wizardmanager.WizardExtras;
+import org.lineageos.setupwizard.wizardmanager.WizardHistory;
+import org.lineageos.setupwizard.wizardmanager.WizardRouter;
 
 import java.util.List;
 
@@ -90,17 +92,18 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
     protected boolean mIsGoingBack = false;
     protected int mResultCode = 0;
     private Intent mResultData;
-
-    private final BroadcastReceiver finishReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (ACTION_SETUP_COMPLETE.equals(intent.getAction())) {
-                if (BaseSetupWizardActivity.this instanceof FinishActivity) return;
-                if (mNavigationBar != null) {
-                    // hide the activity's view, so it does not pop up again
-                    mNavigationBar.getRootView().setVisibility(INVISIBLE);
-                }
-            }
+    // Set while a step started by WizardRouter is on top of us; see sendActionResults
+    private boolean mIsNextPending = false;
+    // Identifies this step in WizardHistory, across recreations
+    private long mHistoryId;
+    private Bundle mSnapshot;
+    private boolean mIsSnapshotTaken = false;
+
+    private final WizardEventBus.Listener mSetupCompleteListener = event -> {
+        if (this instanceof FinishActivity) return;
+        if (mNavigationBar != null) {
+            // hide the activity's view, so it does not pop up again
+            mNavigationBar.getRootView().setVisibility(INVISIBLE);
         }
     };
 
@@ -110,12 +113,28 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
             logActivityState("onCreate savedInstanceState=" + savedInstanceState);
         }
         super.onCreate(savedInstanceState);
-        registerReceiver(finishReceiver, new IntentFilter(ACTION_SETUP_COMPLETE));
+        final WizardHistory history = getHistory();
+        if (savedInstanceState != null && savedInstanceState.containsKey("historyId")) {
+            mHistoryId = savedInstanceState.getLong("historyId");
+            history.onCreated(mHistoryId, this);
+        } else {
+            mHistoryId = history.newId();
+        }
+        WizardEventBus.getInstance(this).subscribe(this, WizardEventBus.Event.SETUP_COMPLETE,
+                mSetupCompleteListener);
         initLayout();
-        mNavigationBar = getNavigationBar();
-        if (mNavigationBar != null) {
-            mNavigationBar.setNavigationBarListener(this);
+    }
+
+    @Override
+    protected void onPostCreate(@Nullable Bundle savedInstanceState) {
+        final Bundle snapshot = savedInstanceState == null ? getSavedState(null) : null;
+        if (snapshot != null) {
+            // Relaunched by Back from WizardHistory, so restore as a recreation would
+            onRestoreInstanceState(snapshot);
+            mIsNextPending = false;
+            mIsGoingBack = true;
         }
+        super.onPostCreate(savedInstanceState);
     }
 
     @Override
@@ -142,7 +161,14 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         if (LOGV) {
             logActivityState("onResume");
         }
+        if (mIsNextPending) {
+            // Stands in for the result WizardManager used to send when it finished
+            mIsNextPending = false;
+            getHistory().onReturned(mHistoryId);
+            onActivityResult(NEXT_REQUEST, RESULT_CANCELED, null);
+        }
         super.onResume();
+        WizardRouter.endTransition(this, getStepName());
         if (mIsGoingBack) {
             if (!mIsExiting) {
                 applyBackwardTransition(getTransition());
@@ -150,6 +176,16 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         } else if (!mIsExiting) {
             applyForwardTransition(getTransition());
         }
+        StepPreloader.getInstance().schedule(this);
+    }
+
+    /**
+     * @return The script action id of this step, or its class name if it was not started from
+     * a script.
+     */
+    protected String getStepName() {
+        final String actionId = getIntent().getStringExtra(EXTRA_ACTION_ID);
+        return actionId != null ? actionId : getClass().getSimpleName();
     }
 
     @Override
@@ -157,6 +193,7 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         if (LOGV) {
             logActivityState("onPause");
         }
+        StepPreloader.getInstance().cancel();
         super.onPause();
     }
 
@@ -173,7 +210,6 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         if (LOGV) {
             logActivityState("onDestroy");
         }
-        unregisterReceiver(finishReceiver);
         super.onDestroy();
     }
 
@@ -192,6 +228,7 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
             Log.v(TAG, "onRestoreInstanceState(" + savedInstanceState + ")");
         }
         super.onRestoreInstanceState(savedInstanceState);
+        mIsNextPending = savedInstanceState.getBoolean("nextPending");
         int currentId = savedInstanceState.getInt("currentFocus", -1);
         if (currentId != -1) {
             View view = findViewById(currentId);
@@ -206,6 +243,9 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         super.onSaveInstanceState(outState);
         View current = getCurrentFocus();
         outState.putInt("currentFocus", current != null ? current.getId() : -1);
+        outState.putBoolean("nextPending", mIsNextPending);
+        outState.putLong("historyId", mHistoryId);
+        getHistory().onStateSaved(mHistoryId, outState);
         if (LOGV) {
             Log.v(TAG, "onSaveInstanceState(" + outState + ")");
         }
@@ -274,6 +314,13 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
             Log.v(TAG, "onBackPressed()");
         }
         setResultCode(RESULT_CANCELED, getResultData());
+        final Intent previous = getHistory().popEvicted();
+        if (previous != null) {
+            // The previous step was finished to save memory; bring it back from its snapshot
+            startActivity(previous);
+            finish();
+            return;
+        }
         super.onBackPressed();
     }
 
@@ -364,6 +411,7 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
             Log.v(TAG, "finish");
         }
         super.finish();
+        getHistory().onFinished(mHistoryId);
         if (isResumed() && mResultCode == RESULT_CANCELED) {
             applyBackwardTransition(getTransition());
         }
@@ -434,14 +482,69 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         if (LOGV) {
             Log.v(TAG, "sendActionResults resultCode=" + mResultCode + " data=" + mResultData);
         }
+        final String scriptUri = getIntent().getStringExtra(EXTRA_SCRIPT_URI);
+        final String actionId = getIntent().getStringExtra(EXTRA_ACTION_ID);
         Intent intent = new Intent(ACTION_NEXT);
-        intent.putExtra(EXTRA_SCRIPT_URI, getIntent().getStringExtra(EXTRA_SCRIPT_URI));
-        intent.putExtra(EXTRA_ACTION_ID, getIntent().getStringExtra(EXTRA_ACTION_ID));
+        intent.putExtra(EXTRA_SCRIPT_URI, scriptUri);
+        intent.putExtra(EXTRA_ACTION_ID, actionId);
         intent.putExtra(EXTRA_RESULT_CODE, mResultCode);
+        if (scriptUri == null || actionId == null) {
+            // Not started from a script; let WizardManager sort it out. Crosses processes, so
+            // only the default extras go along.
+            final Bundle extras = WizardExtras.filter(
+                    mResultData != null ? mResultData.getExtras() : null, null);
+            if (extras != null) {
+                intent.putExtras(extras);
+            }
+            WizardRouter.beginTransition("WizardManager");
+            startActivityForResult(intent, NEXT_REQUEST);
+            return;
+        }
+        // In process, so the extras are only filtered by WizardRouter, for the next action
         if (!(mResultData == null || mResultData.getExtras() == null)) {
             intent.putExtras(mResultData.getExtras());
         }
-        startActivityForResult(intent, NEXT_REQUEST);
+        WizardRouter.beginTransition("WizardRouter");
+        Intent next = WizardRouter.getInstance(this).getNextIntent(scriptUri, actionId,
+                mResultCode, intent);
+        if (next != null) {
+            startNextStep(next);
+        } else {
+            WizardRouter.endTransition(this, "exit");
+            getMainThreadHandler().post(() -> {
+                if (!isFinishing()) {
+                    onActivityResult(NEXT_REQUEST, RESULT_CANCELED, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts {@code next}, the step WizardRouter routed to.
+     */
+    protected void startNextStep(Intent next) {
+        startActivity(next);
+        mIsNextPending = true;
+        getHistory().push(mHistoryId, this);
+    }
+
+    /**
+     * @return {@code savedInstanceState}, or if there is none, the snapshot this step was
+     * relaunched from by Back, if any. For steps that read their saved state in onCreate.
+     */
+    protected Bundle getSavedState(@Nullable Bundle savedInstanceState) {
+        if (savedInstanceState != null) {
+            return savedInstanceState;
+        }
+        if (!mIsSnapshotTaken) {
+            mIsSnapshotTaken = true;
+            mSnapshot = getHistory().takeSnapshot(getIntent());
+        }
+        return mSnapshot;
+    }
+
+    private WizardHistory getHistory() {
+        return WizardRouter.getInstance(this).getHistory();
     }
 
     protected void applyForwardTransition(int transitionId) {
@@ -630,6 +733,7 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
     }
 
     private void initLayout() {
+        final long start = SystemClock.elapsedRealtime();
         if (getLayoutResId() != -1) {
             setContentView(getLayoutResId());
         }
@@ -639,10 +743,21 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         }
         if (getIconResId() != -1) {
             final GlifLayout layout = getGlifLayout();
-            final Drawable icon = getDrawable(getIconResId()).mutate();
-            icon.setTintList(Utils.getColorAccent(layout.getContext()));
+            Drawable icon = StepPreloader.getInstance().takeIcon(this, getIconResId());
+            if (icon == null) {
+                icon = getDrawable(getIconResId()).mutate();
+                icon.setTintList(Utils.getColorAccent(layout.getContext()));
+            }
             layout.setIcon(icon);
         }
+        mNavigationBar = getNavigationBar();
+        if (mNavigationBar != null) {
+            mNavigationBar.setNavigationBarListener(this);
+        }
+        if (LOGV) {
+            Log.v(TAG, getClass().getSimpleName() + " initLayout took "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
     }
 
     protected GlifLayout getGlifLayout() {
@@ -657,7 +772,11 @@ public abstract class BaseSetupWizardActivity extends Activity implements Naviga
         return -1;
     }
 
+    /**
+     * @return The icon of the step, by default the {@code org.lineageos.setupwizard.STEP_ICON}
+     * the activity declares in the manifest, or -1 for none.
+     */
     protected int getIconResId() {
-        return -1;
+        return WizardComponentRegistry.getIconResId(getClass().getName());
     }
 }
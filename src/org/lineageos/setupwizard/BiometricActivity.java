@@ -30,6 +30,7 @@ import com.google.android.setupcompat.util.WizardManagerHelper;
 import com.google.android.setupdesign.util.ThemeHelper;
 
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.wizardmanager.ActionAvailability;
 
 public class BiometricActivity extends SubBaseActivity {
 
@@ -60,6 +61,14 @@ public class BiometricActivity extends SubBaseActivity {
         setNextAllowed(true);
     }
 
+    @Override
+    protected void onSubactivityResult(int requestCode, int resultCode, Intent data) {
+        // The lock screen may have been set up, which the keyguardSecure requirement of later
+        // steps reads
+        ActionAvailability.onCapabilitiesChanged();
+        super.onSubactivityResult(requestCode, resultCode, data);
+    }
+
     @Override
     protected int getLayoutResId() {
         return R.layout.setup_biometric;
@@ -44,7 +44,6 @@ public class BluetoothSetupActivity extends WrapperSubBaseActivity {
         } catch (Exception e) {
             Log.e(TAG, "Error starting bluetooth setup", e);
             nextAction(RESULT_OK);
-            SetupWizardUtils.disableComponent(this, BluetoothSetupActivity.class);
             finish();
         }
     }
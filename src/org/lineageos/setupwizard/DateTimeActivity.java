@@ -45,6 +45,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -61,6 +62,9 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
 
     private static final int HOURS_1 = 60 * 60000;
 
+    private static Locale sTimeZonesFor;
+    private static List<Map<String, Object>> sTimeZones;
+
     private TimeZone mCurrentTimeZone;
     private TextView mDateTextView;
     private TextView mTimeTextView;
@@ -104,9 +108,7 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
                     final String tzId = (String) map.get(KEY_ID);
                     if (mCurrentTimeZone != null && !mCurrentTimeZone.getID().equals(tzId)) {
                         // Update the system timezone value
-                        final AlarmManager alarm =
-                                (AlarmManager) getSystemService(Context.ALARM_SERVICE);
-                        alarm.setTimeZone(tzId);
+                        applyTimeZone(DateTimeActivity.this, tzId);
                         mCurrentTimeZone = TimeZone.getTimeZone(tzId);
                     }
 
@@ -165,11 +167,6 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
         return R.string.setup_datetime;
     }
 
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_datetime;
-    }
-
     @Override
     public void onDateSet(DatePicker view, int year, int month, int day) {
         setDate(this, year, month, day);
@@ -203,11 +200,8 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
         final String[] from = new String[]{KEY_DISPLAYNAME, KEY_GMT};
         final int[] to = new int[]{android.R.id.text1, android.R.id.text2};
 
-        final TimeZoneComparator comparator = new TimeZoneComparator(KEY_OFFSET);
-        final List<Map<String, Object>> sortedList = ZoneGetter.getZonesList(context);
-        Collections.sort(sortedList, comparator);
         final SimpleAdapter adapter = new SimpleAdapter(context,
-                sortedList,
+                getSortedTimeZones(context),
                 R.layout.date_time_setup_custom_list_item_2,
                 from,
                 to);
@@ -215,6 +209,28 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
         return adapter;
     }
 
+    /**
+     * @return The time zones sorted by offset, computed once per system locale as their names
+     * are localized.
+     */
+    public static List<Map<String, Object>> getSortedTimeZones(Context context) {
+        final Locale locale = Locale.getDefault();
+        synchronized (DateTimeActivity.class) {
+            if (sTimeZones != null && locale.equals(sTimeZonesFor)) {
+                return sTimeZones;
+            }
+        }
+        final TimeZoneComparator comparator = new TimeZoneComparator(KEY_OFFSET);
+        final List<Map<String, Object>> sortedList = ZoneGetter.getZonesList(context);
+        Collections.sort(sortedList, comparator);
+        final List<Map<String, Object>> timeZones = Collections.unmodifiableList(sortedList);
+        synchronized (DateTimeActivity.class) {
+            sTimeZonesFor = locale;
+            sTimeZones = timeZones;
+        }
+        return timeZones;
+    }
+
     private static int getTimeZoneIndex(SimpleAdapter adapter, TimeZone tz) {
         final String defaultId = tz.getID();
         final int listSize = adapter.getCount();
@@ -229,6 +245,10 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
         return -1;
     }
 
+    public static void applyTimeZone(Context context, String tzId) {
+        ((AlarmManager) context.getSystemService(Context.ALARM_SERVICE)).setTimeZone(tzId);
+    }
+
     private static void setDate(Context context, int year, int month, int day) {
         Calendar c = Calendar.getInstance();
 
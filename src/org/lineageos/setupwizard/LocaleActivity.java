@@ -18,30 +18,28 @@
 package org.lineageos.setupwizard;
 
 import android.app.Activity;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
+import android.provider.Settings;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.view.View;
-import android.widget.ArrayAdapter;
 import android.widget.NumberPicker;
 import android.widget.Toast;
 
-import com.android.internal.telephony.TelephonyIntents;
 import com.android.internal.telephony.util.LocaleUtils;
 
 import com.google.android.setupcompat.util.SystemBarHelper;
 
+import org.lineageos.setupwizard.util.WizardEventBus;
 import org.lineageos.setupwizard.widget.LocalePicker;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -49,7 +47,10 @@ public class LocaleActivity extends BaseSetupWizardActivity {
 
     public static final String TAG = LocaleActivity.class.getSimpleName();
 
-    private ArrayAdapter<com.android.internal.app.LocalePicker.LocaleInfo> mLocaleAdapter;
+    private static Locale sLocalesFor;
+    private static List<com.android.internal.app.LocalePicker.LocaleInfo> sLocales;
+
+    private List<com.android.internal.app.LocalePicker.LocaleInfo> mLocales;
     private Locale mCurrentLocale;
     private int[] mAdapterIndices;
     private LocalePicker mLanguagePicker;
@@ -62,16 +63,7 @@ public class LocaleActivity extends BaseSetupWizardActivity {
         public void run() {
             if (mCurrentLocale != null) {
                 mLanguagePicker.setEnabled(false);
-                com.android.internal.app.LocalePicker.updateLocale(mCurrentLocale);
-            }
-        }
-    };
-
-    private final BroadcastReceiver mSimChangedReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equals(TelephonyIntents.ACTION_SIM_STATE_CHANGED)) {
-                fetchAndUpdateSimLocale();
+                applyLocale(mCurrentLocale);
             }
         }
     };
@@ -90,21 +82,20 @@ public class LocaleActivity extends BaseSetupWizardActivity {
             });
         }
         loadLanguages();
+        WizardEventBus.getInstance(this).subscribe(this, WizardEventBus.Event.SIM_CHANGED,
+                event -> fetchAndUpdateSimLocale());
     }
 
     @Override
     public void onPause() {
         super.onPause();
         mPaused = true;
-        unregisterReceiver(mSimChangedReceiver);
     }
 
     @Override
     public void onResume() {
         super.onResume();
         mPaused = false;
-        registerReceiver(mSimChangedReceiver,
-                new IntentFilter(TelephonyIntents.ACTION_SIM_STATE_CHANGED));
         if (mLanguagePicker != null) {
             mLanguagePicker.setEnabled(true);
         }
@@ -114,6 +105,33 @@ public class LocaleActivity extends BaseSetupWizardActivity {
         }
     }
 
+    public static void applyLocale(Locale locale) {
+        com.android.internal.app.LocalePicker.updateLocale(locale);
+    }
+
+    /**
+     * @return The locales to pick from, computed once per system locale.
+     */
+    public static List<com.android.internal.app.LocalePicker.LocaleInfo> getLocales(
+            Context context) {
+        final Locale locale = Locale.getDefault();
+        synchronized (LocaleActivity.class) {
+            if (sLocales != null && locale.equals(sLocalesFor)) {
+                return sLocales;
+            }
+        }
+        final boolean isInDeveloperMode = Settings.Global.getInt(context.getContentResolver(),
+                Settings.Global.DEVELOPMENT_SETTINGS_ENABLED, 0) != 0;
+        final List<com.android.internal.app.LocalePicker.LocaleInfo> locales =
+                Collections.unmodifiableList(com.android.internal.app.LocalePicker
+                        .getAllAssetLocales(context, isInDeveloperMode));
+        synchronized (LocaleActivity.class) {
+            sLocalesFor = locale;
+            sLocales = locales;
+        }
+        return locales;
+    }
+
     @Override
     protected int getLayoutResId() {
         return R.layout.setup_locale;
@@ -124,22 +142,16 @@ public class LocaleActivity extends BaseSetupWizardActivity {
         return R.string.setup_locale;
     }
 
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_locale;
-    }
-
     private void loadLanguages() {
-        mLocaleAdapter = com.android.internal.app.LocalePicker.constructAdapter(this,
-                R.layout.locale_picker_item, R.id.locale);
+        mLocales = getLocales(this);
         mCurrentLocale = Locale.getDefault();
         fetchAndUpdateSimLocale();
-        mAdapterIndices = new int[mLocaleAdapter.getCount()];
+        mAdapterIndices = new int[mLocales.size()];
         int currentLocaleIndex = 0;
-        String[] labels = new String[mLocaleAdapter.getCount()];
+        String[] labels = new String[mLocales.size()];
         for (int i = 0; i < mAdapterIndices.length; i++) {
             com.android.internal.app.LocalePicker.LocaleInfo localLocaleInfo =
-                    mLocaleAdapter.getItem(i);
+                    mLocales.get(i);
             Locale localLocale = localLocaleInfo.getLocale();
             if (localLocale.equals(mCurrentLocale)) {
                 currentLocaleIndex = i;
@@ -164,7 +176,7 @@ public class LocaleActivity extends BaseSetupWizardActivity {
         ((SetupWizardApp) getApplication()).setIgnoreSimLocale(true);
         int i = mAdapterIndices[mLanguagePicker.getValue()];
         final com.android.internal.app.LocalePicker.LocaleInfo localLocaleInfo =
-                mLocaleAdapter.getItem(i);
+                mLocales.get(i);
         onLocaleChanged(localLocaleInfo.getLocale());
     }
 
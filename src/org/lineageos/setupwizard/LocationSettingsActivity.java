@@ -17,85 +17,32 @@
 
 package org.lineageos.setupwizard;
 
+import android.content.Context;
 import android.location.LocationManager;
-import android.os.Bundle;
 import android.os.Process;
 import android.os.UserManager;
 import android.provider.Settings;
-import android.view.View;
-import android.widget.CheckBox;
 
-public class LocationSettingsActivity extends BaseSetupWizardActivity {
+import org.lineageos.setupwizard.host.StepHostActivity;
+
+/**
+ * Shows the location step, whose views and logic are those of its step controller.
+ */
+public class LocationSettingsActivity extends StepHostActivity {
 
     public static final String TAG =
             LocationSettingsActivity.class.getSimpleName().substring(0, 22);
 
-    private CheckBox mLocationAccess;
-    private CheckBox mLocationAgpsAccess;
-
-    private LocationManager mLocationManager;
-
-    private UserManager mUserManager;
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setNextText(R.string.next);
-
-        mLocationAccess = (CheckBox) findViewById(R.id.location_checkbox);
-        mLocationAgpsAccess = (CheckBox) findViewById(R.id.location_agps_checkbox);
-        mLocationManager = getSystemService(LocationManager.class);
-        mUserManager = getSystemService(UserManager.class);
-        View locationAccessView = findViewById(R.id.location);
-        locationAccessView.setOnClickListener(v -> {
-            mLocationAccess.setChecked(!mLocationAccess.isChecked());
-        });
-        View locationAgpsAccessView = findViewById(R.id.location_agps);
-        if (mUserManager.isPrimaryUser()) {
-            locationAgpsAccessView.setOnClickListener(v -> {
-                mLocationAgpsAccess.setChecked(!mLocationAgpsAccess.isChecked());
-            });
-        } else {
-            locationAgpsAccessView.setVisibility(View.GONE);
+    public static void applyLocationSettings(Context context, boolean locationEnabled,
+            boolean agpsEnabled) {
+        final LocationManager locationManager = context.getSystemService(LocationManager.class);
+        final UserManager userManager = context.getSystemService(UserManager.class);
+        locationManager.setLocationEnabledForUser(locationEnabled, Process.myUserHandle());
+        if (userManager.isManagedProfile()) {
+            userManager.setUserRestriction(UserManager.DISALLOW_SHARE_LOCATION,
+                    !locationEnabled);
         }
+        Settings.Global.putInt(context.getContentResolver(),
+                Settings.Global.ASSISTED_GPS_ENABLED, agpsEnabled ? 1 : 0);
     }
-
-    @Override
-    public void onResume() {
-        super.onResume();
-        boolean checked = mLocationManager.isLocationEnabled();
-        if (mUserManager.isManagedProfile()) {
-            checked &= mUserManager.hasUserRestriction(UserManager.DISALLOW_SHARE_LOCATION);
-        }
-        mLocationAccess.setChecked(checked);
-    }
-
-    @Override
-    protected void onNextPressed() {
-        mLocationManager.setLocationEnabledForUser(mLocationAccess.isChecked(),
-                Process.myUserHandle());
-        if (mUserManager.isManagedProfile()) {
-            mUserManager.setUserRestriction(UserManager.DISALLOW_SHARE_LOCATION,
-                    !mLocationAccess.isChecked());
-        }
-        Settings.Global.putInt(getContentResolver(), Settings.Global.ASSISTED_GPS_ENABLED,
-                mLocationAgpsAccess.isChecked() ? 1 : 0);
-        super.onNextPressed();
-    }
-
-    @Override
-    protected int getLayoutResId() {
-        return R.layout.location_settings;
-    }
-
-    @Override
-    protected int getTitleResId() {
-        return R.string.setup_location;
-    }
-
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_location;
-    }
-
 }
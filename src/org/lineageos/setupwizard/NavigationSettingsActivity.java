@@ -16,185 +16,42 @@
 
 package org.lineageos.setupwizard;
 
-import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_2BUTTON_OVERLAY;
-import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_3BUTTON_OVERLAY;
-import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_GESTURAL_OVERLAY;
-
 import static com.android.systemui.shared.recents.utilities.Utilities.isLargeScreen;
 
 import static org.lineageos.setupwizard.SetupWizardApp.NAVIGATION_OPTION_KEY;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.app.Activity;
-import android.content.Intent;
-import android.os.Bundle;
-import android.os.UserHandle;
 import android.content.Context;
-import android.view.View;
-import android.widget.CheckBox;
-import android.widget.RadioButton;
-import android.widget.RadioGroup;
-import android.widget.RadioGroup.OnCheckedChangeListener;
-
-import com.airbnb.lottie.LottieAnimationView;
-import com.google.android.setupcompat.util.WizardManagerHelper;
+import android.os.UserHandle;
 
 import lineageos.providers.LineageSettings;
 
-import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.host.StepHostActivity;
 
-public class NavigationSettingsActivity extends BaseSetupWizardActivity {
+/**
+ * Shows the navigation step, whose views and logic are those of its step controller.
+ */
+public class NavigationSettingsActivity extends StepHostActivity {
 
     public static final String TAG = NavigationSettingsActivity.class.getSimpleName();
 
-    private SetupWizardApp mSetupWizardApp;
-
-    private boolean mIsTaskbarEnabled;
-
-    private String mSelection = NAV_BAR_MODE_GESTURAL_OVERLAY;
-
-    private CheckBox mHideGesturalHint;
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-
-        mSetupWizardApp = (SetupWizardApp) getApplication();
-        mIsTaskbarEnabled = LineageSettings.System.getInt(getContentResolver(),
-                LineageSettings.System.ENABLE_TASKBAR, isLargeScreen(this) ? 1 : 0) == 1;
-
-        getGlifLayout().setDescriptionText(getString(R.string.navigation_summary));
-        setNextText(R.string.next);
-
-        int available = 3;
-        // Hide unavailable navigation modes
-        if (!SetupWizardUtils.isPackageInstalled(this, NAV_BAR_MODE_GESTURAL_OVERLAY)) {
-            findViewById(R.id.radio_gesture).setVisibility(View.GONE);
-            ((RadioButton) findViewById(R.id.radio_sw_keys)).setChecked(true);
-            available--;
-        }
-
-        if (!SetupWizardUtils.isPackageInstalled(this, NAV_BAR_MODE_2BUTTON_OVERLAY)) {
-            findViewById(R.id.radio_two_button).setVisibility(View.GONE);
-            available--;
-        }
-
-        if (!SetupWizardUtils.isPackageInstalled(this, NAV_BAR_MODE_3BUTTON_OVERLAY)) {
-            findViewById(R.id.radio_sw_keys).setVisibility(View.GONE);
-            available--;
-        }
-
-        // Hide this page if there's <= 1 available navigation modes
-        if (available <= 1) {
-            mSetupWizardApp.getSettingsBundle().putString(NAVIGATION_OPTION_KEY,
-                    NAV_BAR_MODE_3BUTTON_OVERLAY);
-            Intent intent = WizardManagerHelper.getNextIntent(getIntent(), Activity.RESULT_OK);
-            finishAction(RESULT_OK, intent);
-        }
-
-        final LottieAnimationView navigationIllustration =
-                findViewById(R.id.navigation_illustration);
-        final RadioGroup radioGroup = findViewById(R.id.navigation_radio_group);
-        mHideGesturalHint = findViewById(R.id.hide_navigation_hint);
-
-        // Hide navigation hint checkbox when taskbar is enabled
-        if (mIsTaskbarEnabled) {
-            mHideGesturalHint.setVisibility(View.GONE);
-        }
-
-        radioGroup.setOnCheckedChangeListener(new OnCheckedChangeListener() {
-            @Override
-            public void onCheckedChanged(RadioGroup group, int checkedId) {
-                switch (checkedId) {
-                case R.id.radio_gesture:
-                    mSelection = NAV_BAR_MODE_GESTURAL_OVERLAY;
-                    navigationIllustration
-                            .setAnimation(R.raw.lottie_system_nav_fully_gestural);
-                    revealHintCheckbox();
-                    break;
-                case R.id.radio_two_button:
-                    mSelection = NAV_BAR_MODE_2BUTTON_OVERLAY;
-                    navigationIllustration.setAnimation(R.raw.lottie_system_nav_2_button);
-                    hideHintCheckBox();
-                    break;
-                case R.id.radio_sw_keys:
-                    mSelection = NAV_BAR_MODE_3BUTTON_OVERLAY;
-                    navigationIllustration.setAnimation(R.raw.lottie_system_nav_3_button);
-                    hideHintCheckBox();
-                    break;
-                }
-
-                navigationIllustration.playAnimation();
-            }
-        });
-    }
-
-    private void revealHintCheckbox() {
-        if (mIsTaskbarEnabled) {
-           return;
-        }
-
-        mHideGesturalHint.animate().cancel();
-
-        if (mHideGesturalHint.getVisibility() == View.VISIBLE) {
-            return;
-        }
-
-        mHideGesturalHint.setVisibility(View.VISIBLE);
-        mHideGesturalHint.setAlpha(0.0f);
-        mHideGesturalHint.animate()
-            .translationY(0)
-            .alpha(1.0f)
-            .setListener(null);
-    }
-
-    private void hideHintCheckBox() {
-        if (mIsTaskbarEnabled) {
-           return;
-        }
-
-        if (mHideGesturalHint.getVisibility() == View.INVISIBLE) {
-            return;
-        }
-
-        mHideGesturalHint.animate()
-            .translationY(-mHideGesturalHint.getHeight())
-            .alpha(0.0f)
-            .setListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    super.onAnimationEnd(animation);
-                    mHideGesturalHint.setVisibility(View.INVISIBLE);
-                }
-            });
-    }
-
-    @Override
-    protected void onNextPressed() {
-        mSetupWizardApp.getSettingsBundle().putString(NAVIGATION_OPTION_KEY, mSelection);
-        if (!mIsTaskbarEnabled) {
-            boolean hideHint = mHideGesturalHint.isChecked();
-            LineageSettings.System.putIntForUser(getContentResolver(),
+    /**
+     * @param hideHint Whether to hide the gestural navigation hint, or null to leave it alone.
+     */
+    public static void applyNavigationSettings(SetupWizardApp app, String overlay,
+            Boolean hideHint) {
+        app.putSetting(NAVIGATION_OPTION_KEY, overlay);
+        if (hideHint != null) {
+            LineageSettings.System.putIntForUser(app.getContentResolver(),
                     LineageSettings.System.NAVIGATION_BAR_HINT, hideHint ? 0 : 1,
                     UserHandle.USER_CURRENT);
         }
-        Intent intent = WizardManagerHelper.getNextIntent(getIntent(), Activity.RESULT_OK);
-        nextAction(NEXT_REQUEST, intent);
-    }
-
-    @Override
-    protected int getLayoutResId() {
-        return R.layout.setup_navigation;
-    }
-
-    @Override
-    protected int getTitleResId() {
-        return R.string.setup_navigation;
     }
 
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_navigation;
+    /**
+     * @return Whether the gestural navigation hint setting applies, i.e. the taskbar is off.
+     */
+    public static boolean isNavigationHintConfigurable(Context context) {
+        return LineageSettings.System.getInt(context.getContentResolver(),
+                LineageSettings.System.ENABLE_TASKBAR, isLargeScreen(context) ? 1 : 0) != 1;
     }
 }
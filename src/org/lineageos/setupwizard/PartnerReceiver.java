@@ -20,10 +20,14 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
+import org.lineageos.setupwizard.util.Prewarmer;
+
 public class PartnerReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        // Do nothing
+        // Partner customization is looked up right before setup starts, so use it to warm up
+        final PendingResult result = goAsync();
+        Prewarmer.prewarm(context).whenComplete((r, e) -> result.finish());
     }
 }
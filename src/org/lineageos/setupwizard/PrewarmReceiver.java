@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import org.lineageos.setupwizard.util.Prewarmer;
+
+/**
+ * Warms our caches as soon as the user is unlocked at boot, ahead of the first step.
+ */
+public class PrewarmReceiver extends BroadcastReceiver {
+
+    public static final String TAG = PrewarmReceiver.class.getSimpleName();
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (LOGV) {
+            Log.v(TAG, intent.toString());
+        }
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            return;
+        }
+        final PendingResult result = goAsync();
+        Prewarmer.prewarm(context).whenComplete((r, e) -> result.finish());
+    }
+}
@@ -27,7 +27,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 
-import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.wizardmanager.ActionAvailability;
 
 public class ScreenLockActivity extends SubBaseActivity {
 
@@ -43,7 +43,6 @@ public class ScreenLockActivity extends SubBaseActivity {
         if (isKeyguardSecure()) {
             Log.v(TAG, "Screen lock already set up; skipping ScreenLockActivity");
             nextAction(RESULT_OK);
-            SetupWizardUtils.disableComponent(this, ScreenLockActivity.class);
             finish();
             return;
         }
@@ -51,6 +50,14 @@ public class ScreenLockActivity extends SubBaseActivity {
         setNextAllowed(true);
     }
 
+    @Override
+    protected void onSubactivityResult(int requestCode, int resultCode, Intent data) {
+        // The lock screen may have been set up, which the keyguardSecure requirement of later
+        // steps reads
+        ActionAvailability.onCapabilitiesChanged();
+        super.onSubactivityResult(requestCode, resultCode, data);
+    }
+
     @Override
     protected int getLayoutResId() {
         return R.layout.setup_lockscreen;
@@ -61,11 +68,6 @@ public class ScreenLockActivity extends SubBaseActivity {
         return R.string.lockscreen_setup_title;
     }
 
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_lock_screen;
-    }
-
     private void launchLockscreenSetup() {
         Intent intent = new Intent(ACTION_SETUP_LOCKSCREEN);
         intent.putExtra(EXTRA_TITLE,
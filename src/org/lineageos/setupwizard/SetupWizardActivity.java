@@ -20,18 +20,25 @@ package org.lineageos.setupwizard;
 import static android.content.Intent.FLAG_GRANT_READ_URI_PERMISSION;
 
 import static org.lineageos.setupwizard.SetupWizardApp.ACTION_LOAD;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
 import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
 
 import android.annotation.Nullable;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.util.Log;
 
 import com.google.android.setupcompat.util.WizardManagerHelper;
 
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+import org.lineageos.setupwizard.provisioning.HeadlessProvisioner;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.WizardSessionJournal;
 import org.lineageos.setupwizard.wizardmanager.WizardManager;
 
 public class SetupWizardActivity extends BaseSetupWizardActivity {
@@ -52,24 +59,60 @@ public class SetupWizardActivity extends BaseSetupWizardActivity {
             finish();
         } else if (WizardManagerHelper.isUserSetupComplete(this)
                 && !SetupWizardUtils.isManagedProfile(this)) {
-            SetupWizardUtils.finishSetupWizard(this);
-            finish();
+            SetupWizardUtils.finishSetupWizard(this).thenRunAsync(this::finish,
+                    getMainExecutor());
         } else {
             onSetupStart();
-            SetupWizardUtils.enableComponent(this, WizardManager.class);
+            // Start regardless; WizardManager may well be enabled already
+            final CompletableFuture<Void> wizardManagerEnabled =
+                    SetupWizardUtils.enableComponent(this, WizardManager.class)
+                            .exceptionally(e -> null);
             Intent intent = new Intent(ACTION_LOAD);
-            if (SetupWizardUtils.isOwner()) {
-                intent.putExtra(EXTRA_SCRIPT_URI, getString(R.string.lineage_wizard_script_uri));
-            } else if (SetupWizardUtils.isManagedProfile(this)) {
-                intent.putExtra(EXTRA_SCRIPT_URI, getString(
-                        R.string.lineage_wizard_script_managed_profile_uri));
-            } else {
-                intent.putExtra(EXTRA_SCRIPT_URI,
-                        getString(R.string.lineage_wizard_script_user_uri));
-            }
+            final String scriptUri = SetupWizardUtils.getWizardScriptUri(this);
+            intent.putExtra(EXTRA_SCRIPT_URI, scriptUri);
+            // Resume where the last session left off, if it did not finish
+            final String actionId = WizardSessionJournal.getActionId(this, scriptUri);
             intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | FLAG_GRANT_READ_URI_PERMISSION);
-            startActivity(intent);
-            finish();
+            if (actionId != null) {
+                Log.i(TAG, "Resuming setup at " + actionId);
+                intent.putExtra(EXTRA_ACTION_ID, actionId);
+            } else if (HeadlessProvisioner.isEnabled(this)) {
+                provision(scriptUri, intent, wizardManagerEnabled);
+                return;
+            }
+            // ACTION_LOAD resolves to WizardManager, so wait for it to be enabled
+            wizardManagerEnabled.thenRunAsync(() -> {
+                startActivity(intent);
+                finish();
+            }, getMainExecutor());
         }
     }
+
+    /**
+     * Provisions from the answer file if there is one, or starts {@code loadIntent} if not.
+     */
+    private void provision(String scriptUri, Intent loadIntent,
+            CompletableFuture<Void> wizardManagerEnabled) {
+        final SetupWizardApp app = (SetupWizardApp) getApplication();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            final File answerFile = HeadlessProvisioner.findAnswerFile();
+            wizardManagerEnabled.join();
+            final Intent intent;
+            if (answerFile != null) {
+                Log.i(TAG, "Provisioning from " + answerFile);
+                intent = HeadlessProvisioner.provision(app, scriptUri, answerFile);
+                if (intent != null) {
+                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                }
+            } else {
+                intent = loadIntent;
+            }
+            runOnUiThread(() -> {
+                if (intent != null) {
+                    startActivity(intent);
+                }
+                finish();
+            });
+        });
+    }
 }
@@ -20,6 +20,9 @@ package org.lineageos.setupwizard;
 import static android.os.UserHandle.USER_CURRENT;
 import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_GESTURAL_OVERLAY;
 
+import static org.lineageos.setupwizard.util.StartupTasks.CRITICAL;
+import static org.lineageos.setupwizard.util.StartupTasks.DEFERRABLE;
+
 import android.app.AppOpsManager;
 import android.app.Application;
 import android.app.StatusBarManager;
@@ -29,6 +32,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.om.IOverlayManager;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.ServiceManager;
@@ -36,9 +40,18 @@ import android.os.UserHandle;
 import android.service.oemlock.OemLockManager;
 import android.util.Log;
 
+import org.lineageos.setupwizard.util.DeviceCapabilities;
+import org.lineageos.setupwizard.util.DeviceCapabilities.Capability;
 import org.lineageos.setupwizard.util.NetworkMonitor;
 import org.lineageos.setupwizard.util.PhoneMonitor;
+import org.lineageos.setupwizard.util.Prewarmer;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.StartupTasks;
+import org.lineageos.setupwizard.util.TaskGraph;
+import org.lineageos.setupwizard.util.WizardEventBus;
+import org.lineageos.setupwizard.util.WizardSessionJournal;
+
+import java.util.Locale;
 
 public class SetupWizardApp extends Application {
 
@@ -48,8 +61,6 @@ public class SetupWizardApp extends Application {
 
     public static final String ACTION_ACCESSIBILITY_SETTINGS =
             "android.settings.ACCESSIBILITY_SETTINGS_FOR_SUW";
-    public static final String ACTION_SETUP_COMPLETE =
-            "org.lineageos.setupwizard.LINEAGE_SETUP_COMPLETE";
     public static final String ACTION_FINISHED = "org.lineageos.setupwizard.SETUP_FINISHED";
     public static final String ACTION_SETUP_NETWORK = "android.settings.NETWORK_PROVIDER_SETUP";
     public static final String ACTION_APPS_INSTALLED =
@@ -106,45 +117,97 @@ public class SetupWizardApp extends Application {
 
     private final Runnable mRadioTimeoutRunnable = () -> mIsRadioReady = true;
 
+    private Locale mLocale;
+
     @Override
     public void onCreate() {
         super.onCreate();
         if (LOGV) {
             Log.v(TAG, "onCreate()");
         }
-        NetworkMonitor.initInstance(this);
-        PhoneMonitor.initInstance(this);
-        SetupWizardUtils.disableComponentsForMissingFeatures(this);
-        if (SetupWizardUtils.isOwner()) {
-            SetupWizardUtils.setMobileDataEnabled(this, false);
-        }
-        sStatusBarManager = SetupWizardUtils.disableStatusBar(this);
-        if (SetupWizardUtils.isPackageInstalled(this, NAV_BAR_MODE_GESTURAL_OVERLAY)) {
-            IOverlayManager overlayManager = IOverlayManager.Stub.asInterface(
-                    ServiceManager.getService(Context.OVERLAY_SERVICE));
-            try {
-                overlayManager.setEnabledExclusiveInCategory(NAV_BAR_MODE_GESTURAL_OVERLAY,
-                    USER_CURRENT);
-            } catch (Exception e) {}
-        }
+        WizardSessionJournal.restoreSettings(this, mSettingsBundle);
         mHandler.postDelayed(mRadioTimeoutRunnable, SetupWizardApp.RADIO_READY_TIMEOUT);
-        scheduleIndexUpdateJob();
-        // If the bootloader is locked, and OEM unlocking is allowed, turn it off
-        if (SetupWizardUtils.isOwner()
-                && !SetupWizardUtils.isBootloaderUnlocked(this)
-                && SetupWizardUtils.isOemunlockAllowed(this)) {
-            getSystemService(OemLockManager.class).setOemUnlockAllowedByUser(false);
-        }
-        try {
-            getSystemService(AppOpsManager.class).setMode(AppOpsManager.OP_REQUEST_INSTALL_PACKAGES,
-                    getPackageManager().getPackageUid(AURORA_SERVICES_PACKAGE, 0),
-                    AURORA_SERVICES_PACKAGE,
-                    AppOpsManager.MODE_ALLOWED);
-        } catch (PackageManager.NameNotFoundException e) {
+        buildStartupTasks().run();
+    }
 
+    private StartupTasks buildStartupTasks() {
+        final StartupTasks tasks = new StartupTasks("SetupWizardApp.onCreate");
+
+        // Ahead of any activity, so that it sees them all start
+        tasks.addOnMainThread("eventBus", () -> {
+            mLocale = getResources().getConfiguration().getLocales().get(0);
+            WizardEventBus.getInstance(this).subscribe(WizardEventBus.Event.LOCALE_APPLIED,
+                    event -> Prewarmer.onLocaleApplied(this));
+        });
+        // Both register for broadcasts and callbacks on the main looper, and post to the bus
+        tasks.addOnMainThread("networkMonitor", () -> NetworkMonitor.initInstance(this));
+        tasks.addOnMainThread("phoneMonitor", () -> PhoneMonitor.initInstance(this));
+
+        // The first step must not be shown with the status bar usable
+        tasks.add("statusBar", CRITICAL,
+                () -> sStatusBarManager = SetupWizardUtils.disableStatusBar(this));
+
+        final TaskGraph.Node capabilities = tasks.add("capabilities", DEFERRABLE,
+                () -> DeviceCapabilities.getInstance(this).probeAll().join());
+        // Have the script and first steps ready by the time they are asked for, in case the
+        // boot broadcast did not get to it first
+        tasks.add("prewarm", DEFERRABLE, () -> Prewarmer.prewarm(this).join(), capabilities);
+        tasks.add("mobileData", DEFERRABLE, () -> {
+            if (SetupWizardUtils.isOwner()) {
+                SetupWizardUtils.setMobileDataEnabled(this, false);
+            }
+        });
+        tasks.add("gesturalOverlay", DEFERRABLE, () -> {
+            if (SetupWizardUtils.isPackageInstalled(this, NAV_BAR_MODE_GESTURAL_OVERLAY)) {
+                IOverlayManager overlayManager = IOverlayManager.Stub.asInterface(
+                        ServiceManager.getService(Context.OVERLAY_SERVICE));
+                try {
+                    overlayManager.setEnabledExclusiveInCategory(NAV_BAR_MODE_GESTURAL_OVERLAY,
+                        USER_CURRENT);
+                } catch (Exception e) {}
+            }
+        }, capabilities);
+        tasks.add("indexUpdateJob", DEFERRABLE, this::scheduleIndexUpdateJob);
+        tasks.add("oemUnlock", DEFERRABLE, () -> {
+            // If the bootloader is locked, and OEM unlocking is allowed, turn it off
+            if (SetupWizardUtils.isOwner()
+                    && !SetupWizardUtils.isBootloaderUnlocked(this)
+                    && SetupWizardUtils.isOemunlockAllowed(this)) {
+                getSystemService(OemLockManager.class).setOemUnlockAllowedByUser(false);
+                DeviceCapabilities.getInstance(this).invalidate(Capability.OEM_UNLOCK_ALLOWED);
+            }
+        }, capabilities);
+        tasks.add("auroraAppOps", DEFERRABLE, () -> {
+            try {
+                getSystemService(AppOpsManager.class).setMode(
+                        AppOpsManager.OP_REQUEST_INSTALL_PACKAGES,
+                        getPackageManager().getPackageUid(AURORA_SERVICES_PACKAGE, 0),
+                        AURORA_SERVICES_PACKAGE,
+                        AppOpsManager.MODE_ALLOWED);
+            } catch (PackageManager.NameNotFoundException e) {
+
+            }
+        });
+        return tasks;
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        final Locale locale = newConfig.getLocales().get(0);
+        if (mLocale != null && !mLocale.equals(locale)) {
+            mLocale = locale;
+            WizardEventBus.getInstance(this).post(WizardEventBus.Event.LOCALE_APPLIED);
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Only there to speed up the next step, so the first thing to go
+        StepPreloader.getInstance().drop();
+    }
+
     public static StatusBarManager getStatusBarManager() {
         return sStatusBarManager;
     }
@@ -172,6 +235,14 @@ public class SetupWizardApp extends Application {
         return mSettingsBundle;
     }
 
+    /**
+     * Stores a choice to apply at the end of setup, journaled so it survives process death.
+     */
+    public void putSetting(String key, String value) {
+        mSettingsBundle.putString(key, value);
+        WizardSessionJournal.putSetting(this, key, value);
+    }
+
     public int scheduleIndexUpdateJob() {
         return getSystemService(JobScheduler.class).scheduleAsPackage(new JobInfo.Builder(
                 FDROID_UPDATE_JOB_ID,
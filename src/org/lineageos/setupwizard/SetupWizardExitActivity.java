@@ -27,6 +27,7 @@ import android.os.Bundle;
 import android.util.Log;
 
 import org.lineageos.setupwizard.util.PhoneMonitor;
+import org.lineageos.setupwizard.util.SetupFinalizer;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 
 public class SetupWizardExitActivity extends BaseSetupWizardActivity {
@@ -39,18 +40,20 @@ public class SetupWizardExitActivity extends BaseSetupWizardActivity {
         if (LOGV) {
             Log.v(TAG, "onCreate savedInstanceState=" + savedInstanceState);
         }
-        if (SetupWizardUtils.isOwner()) {
-            SetupWizardUtils.enableCaptivePortalDetection(this);
-        }
         PhoneMonitor.onSetupFinished();
-        if (!SetupWizardUtils.isManagedProfile(this)) {
-            launchHome();
-        }
-        finish();
-        applyForwardTransition(TRANSITION_ID_FADE);
-        Intent i = new Intent();
-        i.setClassName(getPackageName(), SetupWizardExitService.class.getName());
-        startService(i);
+        // Home must not resolve to us again, so launch it once we are disabled
+        final SetupFinalizer finalizer = SetupFinalizer.getInstance(this);
+        finalizer.onAnimationFinished();
+        finalizer.whenHomeReady().thenRunAsync(() -> {
+            if (!SetupWizardUtils.isManagedProfile(this)) {
+                launchHome();
+            }
+            finish();
+            applyForwardTransition(TRANSITION_ID_FADE);
+            Intent i = new Intent();
+            i.setClassName(getPackageName(), SetupWizardExitService.class.getName());
+            startService(i);
+        }, getMainExecutor());
     }
 
     private void launchHome() {
@@ -38,6 +38,7 @@ public class SetupWizardExitService extends IntentService {
         if (LOGV) {
             Log.v(TAG, "onHandleIntent intent=" + intent.toString());
         }
-        SetupWizardUtils.finishSetupWizard(this);
+        // On the worker thread, and the service must not stop before the tasks are done
+        SetupWizardUtils.finishSetupWizard(this).join();
     }
 }
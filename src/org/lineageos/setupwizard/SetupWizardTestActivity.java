@@ -16,6 +16,7 @@
 
 package org.lineageos.setupwizard;
 
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DEFAULT;
 import static android.content.pm.PackageManager.GET_ACTIVITIES;
 import static android.content.pm.PackageManager.GET_RECEIVERS;
 import static android.content.pm.PackageManager.GET_SERVICES;
@@ -31,7 +32,9 @@ import android.os.Bundle;
 import android.provider.Settings;
 import android.util.Log;
 
+import org.lineageos.setupwizard.util.ComponentStateReconciler;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.WizardSessionJournal;
 
 import java.util.List;
 
@@ -48,15 +51,27 @@ public class SetupWizardTestActivity extends Activity {
             Settings.Global.putInt(getContentResolver(), "device_provisioned", 0);
         }
         Settings.Secure.putInt(getContentResolver(), "user_setup_complete", 0);
-        SetupWizardUtils.resetComponentSets(this, GET_ACTIVITIES |
-                GET_RECEIVERS | GET_SERVICES | MATCH_DISABLED_COMPONENTS);
         forgetAllWifi();
+        WizardSessionJournal.clear(this);
         Intent setupIntent = new Intent("android.intent.action.MAIN")
                 .addCategory("android.intent.category.HOME")
                 .addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK | Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        SetupWizardUtils.disableComponentsForMissingFeatures(this);
-        startActivity(setupIntent);
-        finish();
+        // Undo the component and package changes the last setup recorded, and reset every
+        // other component of ours, which older builds may have disabled without recording it
+        final ComponentStateReconciler.DesiredState defaults =
+                new ComponentStateReconciler.DesiredState().setComponents(
+                        SetupWizardUtils.getComponentSets(this, GET_ACTIVITIES | GET_RECEIVERS
+                                | GET_SERVICES | MATCH_DISABLED_COMPONENTS),
+                        COMPONENT_ENABLED_STATE_DEFAULT);
+        ComponentStateReconciler.getInstance(this).restoreRecorded(defaults)
+                .whenCompleteAsync((v, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Unable to restore the component state of the last setup",
+                                e);
+                    }
+                    startActivity(setupIntent);
+                    finish();
+                }, getMainExecutor());
     }
 
     private void forgetAllWifi() {
@@ -36,6 +36,7 @@ import com.google.android.setupcompat.util.WizardManagerHelper;
 
 import org.lineageos.setupwizard.util.NetworkMonitor;
 import org.lineageos.setupwizard.util.PhoneMonitor;
+import org.lineageos.setupwizard.util.WizardEventBus;
 
 public class SimMissingActivity extends SubBaseActivity {
 
@@ -55,12 +56,20 @@ public class SimMissingActivity extends SubBaseActivity {
         mPhoneMonitor = PhoneMonitor.getInstance();
         if (!mPhoneMonitor.simMissing()) {
             finishAction(RESULT_OK);
+            return;
         }
+        // Setting up an eSIM needs a network, which may come up while we are shown
+        WizardEventBus.getInstance(this).subscribe(this, WizardEventBus.Event.NETWORK_CHANGED,
+                event -> updateEuiccOption());
     }
 
     @Override
     protected void onStartSubactivity() {
         setNextAllowed(true);
+        updateEuiccOption();
+    }
+
+    private void updateEuiccOption() {
         EuiccManager euiccManager = (EuiccManager) getSystemService(Context.EUICC_SERVICE);
         if (euiccManager.isEnabled() && NetworkMonitor.getInstance().isNetworkConnected()
                 && SystemProperties.getBoolean(KEY_ENABLE_ESIM_UI_BY_DEFAULT, true)) {
@@ -68,6 +77,7 @@ public class SimMissingActivity extends SubBaseActivity {
                     getString(R.string.sim_missing_summary),
                     getString(R.string.euicc_summary)));
             Button setupEuiccButton = findViewById(R.id.setup_euicc);
+            setupEuiccButton.setVisibility(View.VISIBLE);
             setupEuiccButton.setOnClickListener(v -> launchEuiccSetup());
             FooterButtonStyleUtils.applyPrimaryButtonPartnerResource(this, setupEuiccButton, true);
         } else {
@@ -86,11 +96,6 @@ public class SimMissingActivity extends SubBaseActivity {
         return R.string.setup_sim_missing;
     }
 
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_sim;
-    }
-
     private void launchEuiccSetup() {
         Intent intent = new Intent(EuiccService.ACTION_PROVISION_EMBEDDED_SUBSCRIPTION);
         intent.putExtra(EuiccManager.EXTRA_FORCE_PROVISION, true);
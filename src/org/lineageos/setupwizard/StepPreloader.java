@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard;
+
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.android.settingslib.Utils;
+
+import org.lineageos.setupwizard.wizardmanager.WizardComponentRegistry;
+import org.lineageos.setupwizard.wizardmanager.WizardRouter;
+
+/**
+ * Warms up the step most likely to come next while the current one sits idle on screen.
+ *
+ * <p>Once the main thread goes idle, the next action is predicted from the script's default
+ * transition on a background thread. Its class is loaded and initialized there, and the icon
+ * its manifest declares is loaded and tinted, then kept in a one-slot cache for
+ * {@link BaseSetupWizardActivity} to take over.
+ *
+ * <p>Its layout is not inflated ahead of time, as setupdesign templates bind to the window of
+ * the activity they are inflated in. Must only be used on the main thread.
+ */
+class StepPreloader {
+
+    private static final String TAG = StepPreloader.class.getSimpleName();
+
+    private static StepPreloader sInstance;
+
+    // The one slot
+    private String mClassName;
+    private int mIconResId;
+    private Drawable mIcon;
+    private Configuration mConfiguration;
+
+    private MessageQueue.IdleHandler mPending;
+    // Bumped whenever the slot is to be refilled or emptied, so that late results are dropped
+    private int mGeneration;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    static StepPreloader getInstance() {
+        if (sInstance == null) {
+            sInstance = new StepPreloader();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Preloads the step after {@code current} once the main thread is idle.
+     */
+    void schedule(BaseSetupWizardActivity current) {
+        final Intent intent = current.getIntent();
+        final String scriptUri = intent.getStringExtra(EXTRA_SCRIPT_URI);
+        final String actionId = intent.getStringExtra(EXTRA_ACTION_ID);
+        if (scriptUri == null || actionId == null) {
+            return;
+        }
+        cancel();
+        mPending = () -> {
+            mPending = null;
+            if (!current.isFinishing() && !current.isDestroyed()) {
+                final int generation = mGeneration;
+                final Context context = current.getApplicationContext();
+                // Steps share the theme, so the current one's accent stands in for the next's
+                final ColorStateList tint = Utils.getColorAccent(current);
+                final Configuration configuration =
+                        new Configuration(current.getResources().getConfiguration());
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> preload(context, tint,
+                        configuration, generation, scriptUri, actionId));
+            }
+            return false;
+        };
+        Looper.myQueue().addIdleHandler(mPending);
+    }
+
+    void cancel() {
+        if (mPending != null) {
+            Looper.myQueue().removeIdleHandler(mPending);
+            mPending = null;
+        }
+        mGeneration++;
+    }
+
+    /**
+     * @return The tinted icon preloaded for {@code step}, or null if there is none.
+     */
+    Drawable takeIcon(BaseSetupWizardActivity step, int iconResId) {
+        final boolean hit = mIcon != null && step.getClass().getName().equals(mClassName)
+                && iconResId == mIconResId && mConfiguration.diffPublicOnly(
+                        step.getResources().getConfiguration()) == 0;
+        if (LOGV) {
+            Log.v(TAG, (hit ? "hit" : "miss") + " for " + step.getClass().getSimpleName());
+        }
+        final Drawable icon = hit ? mIcon : null;
+        drop();
+        return icon;
+    }
+
+    /**
+     * Empties the slot, such as when memory runs low.
+     */
+    void drop() {
+        mGeneration++;
+        mClassName = null;
+        mIconResId = -1;
+        mIcon = null;
+        mConfiguration = null;
+    }
+
+    private void preload(Context context, ColorStateList tint, Configuration configuration,
+            int generation, String scriptUri, String actionId) {
+        Trace.beginSection("StepPreloader.preload");
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            final Intent next = WizardRouter.getInstance(context).predictNextIntent(scriptUri,
+                    actionId);
+            // Steps of other apps have no explicit component, and are not ours to warm up
+            if (next == null || next.getComponent() == null
+                    || !context.getPackageName().equals(next.getComponent().getPackageName())) {
+                return;
+            }
+            final String className = next.getComponent().getClassName();
+            final Class<?> stepClass = Class.forName(className, true,
+                    context.getClassLoader());
+            if (!BaseSetupWizardActivity.class.isAssignableFrom(stepClass)) {
+                return;
+            }
+            final long loaded = SystemClock.elapsedRealtime();
+
+            final int iconResId = WizardComponentRegistry.getIconResId(className);
+            final Drawable icon;
+            if (iconResId != -1) {
+                icon = context.getDrawable(iconResId).mutate();
+                icon.setTintList(tint);
+            } else {
+                icon = null;
+            }
+            mHandler.post(() -> {
+                if (icon != null && generation == mGeneration) {
+                    mClassName = className;
+                    mIconResId = iconResId;
+                    mIcon = icon;
+                    mConfiguration = configuration;
+                }
+            });
+            if (LOGV) {
+                Log.v(TAG, "preloaded " + stepClass.getSimpleName() + " after " + actionId
+                        + ": class " + (loaded - start) + "ms, icon "
+                        + (SystemClock.elapsedRealtime() - loaded) + "ms");
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Only a missed optimization; the step loads as usual
+            Log.w(TAG, "Unable to preload the step after " + actionId, e);
+        } finally {
+            Trace.endSection();
+        }
+    }
+}
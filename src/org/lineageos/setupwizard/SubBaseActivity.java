@@ -19,6 +19,7 @@ package org.lineageos.setupwizard;
 import static android.content.Intent.FLAG_ACTIVITY_FORWARD_RESULT;
 
 import static com.google.android.setupcompat.util.ResultCodes.RESULT_ACTIVITY_NOT_FOUND;
+import static com.google.android.setupcompat.util.ResultCodes.RESULT_SKIP;
 
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
@@ -30,12 +31,16 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 
+import org.lineageos.setupwizard.util.StepWatchdog;
+import org.lineageos.setupwizard.wizardmanager.WizardRouter;
+
 public abstract class SubBaseActivity extends BaseSetupWizardActivity {
 
     public static final String TAG = SubBaseActivity.class.getSimpleName();
 
     private boolean mIsSubactivityNotFound = false;
     private int mRequestCode;
+    private StepWatchdog mWatchdog;
 
     protected abstract void onStartSubactivity();
 
@@ -61,6 +66,23 @@ public abstract class SubBaseActivity extends BaseSetupWizardActivity {
         mIsActivityVisible = true;
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (mWatchdog != null) {
+            // Covered by the subactivity, if one is pending
+            mWatchdog.onShown();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (mWatchdog != null) {
+            mWatchdog.cancel();
+        }
+        super.onDestroy();
+    }
+
     @Override
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         outState.putInt("request_code", mRequestCode);
@@ -97,6 +119,7 @@ public abstract class SubBaseActivity extends BaseSetupWizardActivity {
             }
         }
         startFirstRunActivityForResult(subactivityIntent, requestCode);
+        getWatchdog().onStarted();
         mIsSubactivityNotFound = false;
         applyForwardTransition(getSubactivityPreviousTransition());
     }
@@ -109,6 +132,13 @@ public abstract class SubBaseActivity extends BaseSetupWizardActivity {
                     ", " + getResultName(requestCode, resultCode));
         }
         if (requestCode == mRequestCode) {
+            if (mWatchdog != null && mWatchdog.hasStalled()) {
+                Log.w(TAG, "Ignoring the late result of " + getRequestName(requestCode));
+                return;
+            }
+            if (mWatchdog != null) {
+                mWatchdog.onResult();
+            }
             StringBuilder append = new StringBuilder().append("subactivity result {")
                     .append(getRequestName(requestCode)).append(", ")
                     .append(getResultName(mRequestCode, resultCode)).append(", ");
@@ -148,6 +178,28 @@ public abstract class SubBaseActivity extends BaseSetupWizardActivity {
         }
     }
 
+    private StepWatchdog getWatchdog() {
+        if (mWatchdog == null) {
+            final String scriptUri = getIntent().getStringExtra(EXTRA_SCRIPT_URI);
+            final String actionId = getIntent().getStringExtra(EXTRA_ACTION_ID);
+            final int timeoutMillis = scriptUri != null && actionId != null
+                    ? WizardRouter.getInstance(this).getTimeoutMillis(scriptUri, actionId) : 0;
+            mWatchdog = new StepWatchdog(this,
+                    actionId != null ? actionId : getClass().getSimpleName(), timeoutMillis,
+                    this::onSubactivityStalled);
+        }
+        return mWatchdog;
+    }
+
+    /**
+     * Called when the subactivity did not show within the action's timeout. Gives up on it and
+     * takes the skip transition of the script.
+     */
+    protected void onSubactivityStalled() {
+        finishActivity(mRequestCode);
+        nextAction(RESULT_SKIP);
+    }
+
     protected int getSubactivityPreviousTransition() {
         return TRANSITION_ID_SLIDE;
     }
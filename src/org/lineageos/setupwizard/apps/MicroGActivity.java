@@ -19,18 +19,17 @@ package org.lineageos.setupwizard.apps;
 import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
 import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_ENABLED;
 
-import android.annotation.Nullable;
+import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.os.Bundle;
 import android.util.Log;
-import android.widget.CompoundButton;
-import android.widget.Switch;
 
-import org.lineageos.setupwizard.BaseSetupWizardActivity;
-import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.host.StepHostActivity;
+import org.lineageos.setupwizard.util.ComponentStateReconciler;
 
-public class MicroGActivity extends BaseSetupWizardActivity {
+/**
+ * Shows the microG step, whose views and logic are those of its step controller.
+ */
+public class MicroGActivity extends StepHostActivity {
 
     public static final String TAG = MicroGActivity.class.getSimpleName();
     private static final String[] MICROG_PACKAGES = new String[]{
@@ -39,61 +38,34 @@ public class MicroGActivity extends BaseSetupWizardActivity {
             "com.android.vending"
     };
 
-    private PackageManager pm;
-    private Switch enableSwitch;
-    private Switch enableDefaults;
-
-    @Override
-    protected void onCreate(@Nullable Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-
-        setNextText(R.string.next);
-        getGlifLayout().setDescriptionText(getString(R.string.microg_description2));
-
-        enableSwitch = findViewById(R.id.enableSwitch);
-        enableDefaults = findViewById(R.id.enableDefaults);
-        enableSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            enableDefaults.setEnabled(isChecked);
-            enableDefaults.setChecked(isChecked);
-        });
-
-        pm = getPackageManager();
-    }
-
-    @Override
-    protected int getLayoutResId() {
-        return R.layout.microg_activity;
-    }
-
-    @Override
-    protected int getTitleResId() {
-        return R.string.microg_title;
-    }
-
-    @Override
-    protected int getIconResId() {
-        return R.drawable.microg_logo;
-    }
-
-    @Override
-    public void onNextPressed() {
+    /**
+     * @param provision Whether to provision microG with {@code defaultsEnabled}; the defaults
+     * are left alone otherwise.
+     */
+    public static void applyMicroGSettings(Context context, boolean enabled, boolean provision,
+            boolean defaultsEnabled) {
+        final Context appContext = context.getApplicationContext();
+        final int state = enabled
+                ? COMPONENT_ENABLED_STATE_ENABLED : COMPONENT_ENABLED_STATE_DISABLED;
+        final ComponentStateReconciler.DesiredState desired =
+                new ComponentStateReconciler.DesiredState();
         for (String packageId : MICROG_PACKAGES) {
-            setAppEnabled(packageId, enableSwitch.isChecked());
+            desired.setPackage(packageId, state);
         }
-        if (enableDefaults.isEnabled()) {
-            Intent intent = new Intent();
-            intent.setClassName("com.google.android.gms",
-                    "org.microg.gms.provision.ProvisionService");
-            intent.putExtra("checkin_enabled", enableDefaults.isChecked());
-            intent.putExtra("gcm_enabled", enableDefaults.isChecked());
-            intent.putExtra("safetynet_enabled", false);
-            startService(intent);
-        }
-        super.onNextPressed();
-    }
-
-    private void setAppEnabled(String packageName, boolean enabled) {
-        int state = enabled ? COMPONENT_ENABLED_STATE_ENABLED : COMPONENT_ENABLED_STATE_DISABLED;
-        pm.setApplicationEnabledSetting(packageName, state, 0);
+        // The provision service is only reachable once microG is enabled
+        ComponentStateReconciler.getInstance(appContext).apply(desired).whenComplete((v, e) -> {
+            if (e != null) {
+                Log.e(TAG, "Unable to " + (enabled ? "enable" : "disable")
+                        + " microG, not provisioning it", e);
+            } else if (provision) {
+                Intent intent = new Intent();
+                intent.setClassName("com.google.android.gms",
+                        "org.microg.gms.provision.ProvisionService");
+                intent.putExtra("checkin_enabled", defaultsEnabled);
+                intent.putExtra("gcm_enabled", defaultsEnabled);
+                intent.putExtra("safetynet_enabled", false);
+                appContext.startService(intent);
+            }
+        });
     }
 }
@@ -75,11 +75,6 @@ public class RestoreIntroActivity extends SubBaseActivity {
         return R.string.intro_restore_title;
     }
 
-    @Override
-    protected int getIconResId() {
-        return R.drawable.ic_restore;
-    }
-
     private void launchRestore() {
         Intent intent = new Intent(ACTION_RESTORE_FROM_BACKUP);
         startSubactivity(intent, REQUEST_CODE_RESTORE);
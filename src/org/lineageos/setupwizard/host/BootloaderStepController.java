@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import android.os.PowerManager;
+import android.widget.Button;
+
+import com.google.android.setupcompat.template.FooterButtonStyleUtils;
+
+import org.lineageos.setupwizard.BootloaderWarningActivity;
+import org.lineageos.setupwizard.R;
+
+/**
+ * The bootloader warning step, whether hosted along with other steps or shown on its own by
+ * {@link BootloaderWarningActivity}.
+ */
+class BootloaderStepController extends StepController {
+
+    @Override
+    protected int getLayoutResId() {
+        return R.layout.bootloader_warning_activity;
+    }
+
+    @Override
+    protected int getTitleResId() {
+        return R.string.bootloader_warning_title;
+    }
+
+    @Override
+    protected void onViewCreated() {
+        final Button rebootButton = findViewById(R.id.reboot_bootloader);
+        rebootButton.setOnClickListener(v ->
+                mHost.getSystemService(PowerManager.class).reboot("bootloader"));
+        FooterButtonStyleUtils.applyPrimaryButtonPartnerResource(mHost, rebootButton, true);
+        setDescriptionText(R.string.bootloader_warning_summary);
+        mHost.setNextAllowed(false);
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+/**
+ * Shows a composite action, whose page is built by {@link CompositeStepController}.
+ */
+public class CompositeStepActivity extends StepHostActivity {
+
+    public static final String TAG = CompositeStepActivity.class.getSimpleName();
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.android.settingslib.Utils;
+import com.google.android.setupcompat.util.WizardManagerHelper;
+
+import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.wizardmanager.WizardRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows several short steps as sections of one page, so that they take a single transition
+ * instead of one each.
+ *
+ * <p>The sections are the intent actions listed in the {@code wizard:sections} of the action,
+ * in order. Each is shown by the {@link StepController} of its step, inflated from its
+ * section layout. Next commits every section in order, then moves on as one step. A section
+ * that skips itself is only removed from the page; the page is skipped once none are left.
+ *
+ * <p>Only steps that have a section layout can be sections: location, navigation and microG.
+ * The bootloader warning has none, since it holds back Next until the device reboots. Steps
+ * without a {@link StepController} cannot be sections at all.
+ */
+class CompositeStepController extends StepController {
+
+    private static final String TAG = CompositeStepController.class.getSimpleName();
+
+    private final List<StepController> mSections = new ArrayList<>();
+    private ViewGroup mSectionsView;
+
+    @Override
+    protected int getLayoutResId() {
+        return R.layout.composite_step;
+    }
+
+    @Override
+    protected int getTitleResId() {
+        return R.string.setup_composite;
+    }
+
+    @Override
+    protected void onViewCreated() {
+        setNextText(R.string.next);
+        mSectionsView = findViewById(R.id.sections);
+        final LayoutInflater inflater = mHost.getLayoutInflater();
+        for (String action : getSectionActions()) {
+            final StepController section = StepControllers.create(new Intent(action));
+            if (section == null || section.getSectionLayoutResId() == -1) {
+                Log.e(TAG, "No section for " + action);
+                continue;
+            }
+            final View view = inflater.inflate(R.layout.step_section, mSectionsView, false);
+            final TextView title = view.findViewById(R.id.section_title);
+            if (section.getTitleResId() != -1) {
+                title.setText(section.getTitleResId());
+            }
+            final int iconResId = StepControllers.getIconResId(action);
+            if (iconResId != -1) {
+                final Drawable icon = mHost.getDrawable(iconResId).mutate();
+                icon.setTintList(Utils.getColorAccent(mHost));
+                title.setCompoundDrawablesRelativeWithIntrinsicBounds(icon, null, null, null);
+            }
+            inflater.inflate(section.getSectionLayoutResId(),
+                    view.findViewById(R.id.section_content), true);
+            mSectionsView.addView(view);
+            section.attachSection(mHost, this, view);
+            mSections.add(section);
+        }
+        if (LOGV) {
+            Log.v(TAG, "Showing " + mSections.size() + " sections");
+        }
+        // Sections may remove themselves as they go
+        for (StepController section : new ArrayList<>(mSections)) {
+            section.onViewCreated();
+        }
+        if (mSections.isEmpty()) {
+            skip(Activity.RESULT_OK, WizardManagerHelper.getNextIntent(mHost.getIntent(),
+                    Activity.RESULT_OK));
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        for (StepController section : mSections) {
+            section.onResume();
+        }
+    }
+
+    @Override
+    protected void onCommit() {
+        for (StepController section : mSections) {
+            section.onCommit();
+        }
+    }
+
+    @Override
+    protected void onDetach() {
+        for (StepController section : mSections) {
+            section.onDetach();
+        }
+    }
+
+    void setSectionDescription(StepController section, int resId) {
+        final TextView description = section.getSectionView().findViewById(
+                R.id.section_description);
+        description.setText(resId);
+        description.setVisibility(View.VISIBLE);
+    }
+
+    void removeSection(StepController section) {
+        if (mSections.remove(section)) {
+            section.onDetach();
+            mSectionsView.removeView(section.getSectionView());
+        }
+    }
+
+    private List<String> getSectionActions() {
+        final Intent intent = mHost.getIntent();
+        final String scriptUri = intent.getStringExtra(EXTRA_SCRIPT_URI);
+        final String actionId = intent.getStringExtra(EXTRA_ACTION_ID);
+        if (scriptUri == null || actionId == null) {
+            return List.of();
+        }
+        return WizardRouter.getInstance(mHost).getSections(scriptUri, actionId);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import android.location.LocationManager;
+import android.os.UserManager;
+import android.view.View;
+import android.widget.CheckBox;
+
+import org.lineageos.setupwizard.LocationSettingsActivity;
+import org.lineageos.setupwizard.R;
+
+/**
+ * The location step, whether hosted along with other steps or shown on its own by
+ * {@link LocationSettingsActivity}.
+ */
+class LocationStepController extends StepController {
+
+    private CheckBox mLocationAccess;
+    private CheckBox mLocationAgpsAccess;
+
+    @Override
+    protected int getLayoutResId() {
+        return R.layout.location_settings;
+    }
+
+    @Override
+    protected int getSectionLayoutResId() {
+        return R.layout.location_settings_content;
+    }
+
+    @Override
+    protected int getTitleResId() {
+        return R.string.setup_location;
+    }
+
+    @Override
+    protected void onViewCreated() {
+        setNextText(R.string.next);
+        mLocationAccess = findViewById(R.id.location_checkbox);
+        mLocationAgpsAccess = findViewById(R.id.location_agps_checkbox);
+        findViewById(R.id.location).setOnClickListener(v ->
+                mLocationAccess.setChecked(!mLocationAccess.isChecked()));
+        final View locationAgpsAccessView = findViewById(R.id.location_agps);
+        if (mHost.getSystemService(UserManager.class).isPrimaryUser()) {
+            locationAgpsAccessView.setOnClickListener(v ->
+                    mLocationAgpsAccess.setChecked(!mLocationAgpsAccess.isChecked()));
+        } else {
+            locationAgpsAccessView.setVisibility(View.GONE);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        final UserManager userManager = mHost.getSystemService(UserManager.class);
+        boolean checked = mHost.getSystemService(LocationManager.class).isLocationEnabled();
+        if (userManager.isManagedProfile()) {
+            checked &= userManager.hasUserRestriction(UserManager.DISALLOW_SHARE_LOCATION);
+        }
+        mLocationAccess.setChecked(checked);
+    }
+
+    @Override
+    protected void onCommit() {
+        LocationSettingsActivity.applyLocationSettings(mHost, mLocationAccess.isChecked(),
+                mLocationAgpsAccess.isChecked());
+    }
+}
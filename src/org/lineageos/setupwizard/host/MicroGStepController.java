@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import android.widget.Switch;
+
+import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.apps.MicroGActivity;
+
+/**
+ * The microG step, whether hosted along with other steps or shown on its own by
+ * {@link MicroGActivity}.
+ */
+class MicroGStepController extends StepController {
+
+    private Switch mEnableSwitch;
+    private Switch mEnableDefaults;
+
+    @Override
+    protected int getLayoutResId() {
+        return R.layout.microg_activity;
+    }
+
+    @Override
+    protected int getSectionLayoutResId() {
+        return R.layout.microg_content;
+    }
+
+    @Override
+    protected int getTitleResId() {
+        return R.string.microg_title;
+    }
+
+    @Override
+    protected void onViewCreated() {
+        setNextText(R.string.next);
+        setDescriptionText(R.string.microg_description2);
+        mEnableSwitch = findViewById(R.id.enableSwitch);
+        mEnableDefaults = findViewById(R.id.enableDefaults);
+        mEnableSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            mEnableDefaults.setEnabled(isChecked);
+            mEnableDefaults.setChecked(isChecked);
+        });
+    }
+
+    @Override
+    protected void onCommit() {
+        MicroGActivity.applyMicroGSettings(mHost, mEnableSwitch.isChecked(),
+                mEnableDefaults.isEnabled(), mEnableDefaults.isChecked());
+    }
+}
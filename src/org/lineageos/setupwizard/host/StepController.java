@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import android.content.Intent;
+import android.view.View;
+
+/**
+ * The logic of a step, kept apart from the {@link StepHostActivity} that shows it.
+ *
+ * <p>A controller lives as long as its host. It gets its views once they have been inflated
+ * from {@link #getLayoutResId()}, and moves on through {@link StepHostActivity#next}.
+ *
+ * <p>Steps with a {@link #getSectionLayoutResId() section layout} can also be shown as a
+ * section of a {@link CompositeStepController} page. The views of a section are only looked up
+ * within it, Next is pressed for the page as a whole, and the section only gets to
+ * {@link #onCommit()} its choices.
+ */
+public abstract class StepController {
+
+    protected StepHostActivity mHost;
+
+    // Set when shown as a section of a composite page
+    private CompositeStepController mComposite;
+    private View mSectionView;
+
+    void attach(StepHostActivity host) {
+        mHost = host;
+    }
+
+    void attachSection(StepHostActivity host, CompositeStepController composite,
+            View section) {
+        mHost = host;
+        mComposite = composite;
+        mSectionView = section;
+    }
+
+    View getSectionView() {
+        return mSectionView;
+    }
+
+    protected abstract int getLayoutResId();
+
+    /**
+     * @return The layout of the step without the page around it, or -1 if the step cannot be
+     * shown as a section.
+     */
+    protected int getSectionLayoutResId() {
+        return -1;
+    }
+
+    protected int getTitleResId() {
+        return -1;
+    }
+
+    /**
+     * Called once the views of the step are in place.
+     */
+    protected void onViewCreated() {
+    }
+
+    /**
+     * Called whenever the host resumes.
+     */
+    protected void onResume() {
+    }
+
+    /**
+     * Applies the choices made on the step, without moving on.
+     */
+    protected void onCommit() {
+    }
+
+    protected void onNextPressed() {
+        onCommit();
+        mHost.next();
+    }
+
+    /**
+     * Called when the host is destroyed.
+     */
+    protected void onDetach() {
+    }
+
+    protected final <T extends View> T findViewById(int id) {
+        return mSectionView != null ? mSectionView.findViewById(id) : mHost.findViewById(id);
+    }
+
+    protected void setDescriptionText(int resId) {
+        if (mComposite != null) {
+            mComposite.setSectionDescription(this, resId);
+        } else {
+            mHost.getStepLayout().setDescriptionText(mHost.getString(resId));
+        }
+    }
+
+    protected void setNextText(int resId) {
+        // The page has a single Next
+        if (mComposite == null) {
+            mHost.setStepNextText(resId);
+        }
+    }
+
+    /**
+     * Moves on without keeping the step for Back, for steps that turn out to have nothing to
+     * show. A section is only removed from its page.
+     */
+    protected void skip(int resultCode, Intent data) {
+        if (mComposite != null) {
+            mComposite.removeSection(this);
+        } else {
+            mHost.skip(resultCode, data);
+        }
+    }
+}
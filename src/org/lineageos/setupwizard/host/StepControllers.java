@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import android.content.Intent;
+
+import org.lineageos.setupwizard.wizardmanager.WizardComponentRegistry;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The steps that have a {@link StepController}, keyed by the action of their intent.
+ */
+public class StepControllers {
+
+    // Must match the intent filters of the activities that show these on their own
+    private static final Map<String, Supplier<StepController>> CONTROLLERS = Map.of(
+            "org.lineageos.setupwizard.COMPOSITE_STEP",
+            CompositeStepController::new,
+            "org.lineageos.setupwizard.LINEAGE_BOOTLOADER_WARNING",
+            BootloaderStepController::new,
+            "org.lineageos.setupwizard.LINEAGE_LOCATION_SETTINGS",
+            LocationStepController::new,
+            "org.lineageos.setupwizard.LINEAGE_MICROG",
+            MicroGStepController::new,
+            "org.lineageos.setupwizard.NAVIGATION_SETTINGS",
+            NavigationStepController::new);
+
+    /**
+     * @return The icon of the step {@code action} starts, as declared in the manifest by the
+     * activity that shows it on its own, or -1 if there is none.
+     */
+    static int getIconResId(String action) {
+        return WizardComponentRegistry.getIconResId(WizardComponentRegistry.getClassName(action));
+    }
+
+    /**
+     * @return A new controller for the step {@code intent} starts, or null if it has none.
+     */
+    static StepController create(Intent intent) {
+        final Supplier<StepController> factory = intent.getAction() != null
+                ? CONTROLLERS.get(intent.getAction()) : null;
+        return factory != null ? factory.get() : null;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.host;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.google.android.setupdesign.GlifLayout;
+
+import org.lineageos.setupwizard.BaseSetupWizardActivity;
+
+/**
+ * An activity that shows the step its intent starts through the {@link StepController} of that
+ * step, which holds all of the step's logic.
+ */
+public abstract class StepHostActivity extends BaseSetupWizardActivity {
+
+    public static final String TAG = StepHostActivity.class.getSimpleName();
+
+    private StepController mController;
+    private boolean mSkipping;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        mController = StepControllers.create(getIntent());
+        if (mController != null) {
+            mController.attach(this);
+        }
+        super.onCreate(savedInstanceState);
+        if (mController == null) {
+            Log.e(TAG, "No step to show for " + getIntent());
+            finish();
+            return;
+        }
+        mController.onViewCreated();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (mController != null) {
+            mController.onResume();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (mController != null) {
+            mController.onDetach();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onNextPressed() {
+        mController.onNextPressed();
+    }
+
+    @Override
+    protected void startNextStep(Intent next) {
+        super.startNextStep(next);
+        if (mSkipping) {
+            mSkipping = false;
+            finish();
+        }
+    }
+
+    /**
+     * Moves on to the next step, as Next does by default.
+     */
+    public void next() {
+        super.onNextPressed();
+    }
+
+    public void next(Intent data) {
+        nextAction(NEXT_REQUEST, data);
+    }
+
+    /**
+     * Moves on without keeping the step for Back, for steps that turn out to have nothing to
+     * show.
+     */
+    public void skip(int resultCode, Intent data) {
+        mSkipping = true;
+        nextAction(resultCode, data);
+    }
+
+    public GlifLayout getStepLayout() {
+        return getGlifLayout();
+    }
+
+    public void setStepNextText(int resId) {
+        setNextText(resId);
+    }
+
+    @Override
+    protected int getLayoutResId() {
+        return mController != null ? mController.getLayoutResId() : -1;
+    }
+
+    @Override
+    protected int getTitleResId() {
+        return mController != null ? mController.getTitleResId() : -1;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.provisioning;
+
+import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_2BUTTON_OVERLAY;
+import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_3BUTTON_OVERLAY;
+import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_GESTURAL_OVERLAY;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.google.android.setupcompat.util.ResultCodes;
+
+import org.lineageos.setupwizard.DateTimeActivity;
+import org.lineageos.setupwizard.LocaleActivity;
+import org.lineageos.setupwizard.LocationSettingsActivity;
+import org.lineageos.setupwizard.NavigationSettingsActivity;
+import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.SetupWizardApp;
+import org.lineageos.setupwizard.apps.MicroGActivity;
+import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.wizardmanager.ActionAvailability;
+import org.lineageos.setupwizard.wizardmanager.WizardAction;
+import org.lineageos.setupwizard.wizardmanager.WizardRouter;
+import org.lineageos.setupwizard.wizardmanager.WizardScript;
+import org.lineageos.setupwizard.wizardmanager.WizardScriptRegistry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Walks the wizard script without UI, answering steps from an answer file.
+ *
+ * <p>Only runs if {@code config_headlessProvisioning} is set. The answer file is a
+ * {@link Properties} file named {@link #ANSWER_FILE_NAME} in the {@code etc} directory of the
+ * product or system_ext partition, so that only the build can provide one:
+ *
+ * <pre>
+ * locale=de-DE
+ * timezone=Europe/Berlin
+ * location=true
+ * location.agps=true
+ * microg=true
+ * microg.defaults=true
+ * navigation=gestural|2button|3button
+ * navigation.hide_hint=false
+ * skip=bootloader,network_setup
+ * </pre>
+ *
+ * Answers are applied through the same helpers the steps use when Next is pressed. Only the
+ * action ids in {@code config_headlessProvisioningSkippable} may be skipped. The walk stops at
+ * the first step the answers do not cover, which is then shown as usual. If every step is
+ * answered, the walk hands off to the finish step, which finishes setup as it does when
+ * the wizard is gone through by hand.
+ */
+public class HeadlessProvisioner {
+
+    public static final String TAG = HeadlessProvisioner.class.getSimpleName();
+
+    public static final String ANSWER_FILE_NAME = "setupwizard_answers.properties";
+
+    private static final String KEY_LOCALE = "locale";
+    private static final String KEY_TIMEZONE = "timezone";
+    private static final String KEY_LOCATION = "location";
+    private static final String KEY_LOCATION_AGPS = "location.agps";
+    private static final String KEY_MICROG = "microg";
+    private static final String KEY_MICROG_DEFAULTS = "microg.defaults";
+    private static final String KEY_NAVIGATION = "navigation";
+    private static final String KEY_NAVIGATION_HIDE_HINT = "navigation.hide_hint";
+    private static final String KEY_SKIP = "skip";
+
+    // Must match the action ids in res/raw*/lineage_wizard_script*.xml
+    private static final String ACTION_WELCOME = "welcome";
+    private static final String ACTION_LOCALE = "locale";
+    private static final String ACTION_DATETIME = "datetime";
+    private static final String ACTION_LOCATION = "location_settings";
+    private static final String ACTION_MICROG = "microg";
+    private static final String ACTION_NAVIGATION = "navigation_settings";
+    private static final String ACTION_FINISH = "finish";
+
+    private final SetupWizardApp mApp;
+    private final String mScriptUri;
+    private final Properties mAnswers;
+    private final Set<String> mSkipped = new HashSet<>();
+
+    public static boolean isEnabled(Context context) {
+        return context.getResources().getBoolean(R.bool.config_headlessProvisioning);
+    }
+
+    /**
+     * @return The answer file of the first read-only partition that has one, or null if there is
+     * none. Does disk I/O, so must not be called on the main thread.
+     */
+    public static File findAnswerFile() {
+        for (File partition : new File[]{Environment.getProductDirectory(),
+                Environment.getSystemExtDirectory()}) {
+            final File answerFile = new File(partition, "etc/" + ANSWER_FILE_NAME);
+            if (answerFile.isFile()) {
+                return answerFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The intent of the step to hand off to, or null if setup has been finished.
+     */
+    public static Intent provision(SetupWizardApp app, String scriptUri, File answerFile) {
+        final Properties answers = new Properties();
+        try (InputStream in = new FileInputStream(answerFile)) {
+            answers.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Unable to read " + answerFile, e);
+            return WizardRouter.getInstance(app).getFirstIntent(scriptUri, null, null);
+        }
+        return new HeadlessProvisioner(app, scriptUri, answers).run();
+    }
+
+    private HeadlessProvisioner(SetupWizardApp app, String scriptUri, Properties answers) {
+        mApp = app;
+        mScriptUri = scriptUri;
+        mAnswers = answers;
+        final String skip = answers.getProperty(KEY_SKIP);
+        if (skip != null) {
+            final List<String> skippable = Arrays.asList(app.getResources().getStringArray(
+                    R.array.config_headlessProvisioningSkippable));
+            for (String actionId : skip.split(",")) {
+                actionId = actionId.trim();
+                if (skippable.contains(actionId)) {
+                    mSkipped.add(actionId);
+                } else {
+                    Log.w(TAG, actionId + " may not be skipped");
+                }
+            }
+        }
+    }
+
+    private Intent run() {
+        Trace.beginSection("HeadlessProvisioner.run");
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            final WizardScript script = WizardScriptRegistry.getInstance(mApp).get(mScriptUri);
+            if (script == null) {
+                Log.e(TAG, "Unable to load " + mScriptUri);
+                return null;
+            }
+            final ActionAvailability availability = ActionAvailability.getInstance(mApp);
+            final List<String> answered = new ArrayList<>();
+            final List<String> needsHuman = new ArrayList<>();
+            String handoffId = null;
+            String lastId = null;
+            int lastResultCode = Activity.RESULT_OK;
+
+            // A script whose transitions loop without reaching finish would otherwise never end
+            final int maxHops = script.getActions().size();
+            int hops = 0;
+
+            WizardAction action = script.getFirstAvailableAction(availability::isAvailable);
+            while (action != null && !ACTION_FINISH.equals(action.getId())) {
+                if (hops++ == maxHops) {
+                    Log.e(TAG, "Gave up after " + maxHops + " steps at " + action.getId()
+                            + ", the script does not reach " + ACTION_FINISH);
+                    break;
+                }
+                final String actionId = action.getId();
+                int resultCode = Activity.RESULT_OK;
+                if (handoffId == null && mSkipped.contains(actionId)) {
+                    resultCode = ResultCodes.RESULT_SKIP;
+                    answered.add(actionId);
+                } else if (handoffId == null && apply(actionId)) {
+                    answered.add(actionId);
+                } else {
+                    // Past the handoff every step is shown, so keep walking the default path
+                    // to report them
+                    if (handoffId == null) {
+                        handoffId = actionId;
+                    }
+                    needsHuman.add(actionId);
+                }
+                lastId = actionId;
+                lastResultCode = resultCode;
+                action = script.getNextAvailableAction(actionId, resultCode,
+                        availability::isAvailable);
+            }
+            if (handoffId == null && action != null) {
+                handoffId = action.getId();
+            }
+
+            Log.i(TAG, "Provisioned " + answered + " in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms; "
+                    + (needsHuman.isEmpty() ? "no step needs a human"
+                    : "steps needing a human: " + needsHuman));
+            final WizardRouter router = WizardRouter.getInstance(mApp);
+            if (handoffId == null && lastId != null) {
+                // The script ends without a finish step; exit it the way the last step would
+                return router.getNextIntent(mScriptUri, lastId, lastResultCode, null);
+            }
+            return router.getFirstIntent(mScriptUri, handoffId, null);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * @return Whether {@code actionId} was answered, in which case its answers are applied.
+     */
+    private boolean apply(String actionId) {
+        if (LOGV) {
+            Log.v(TAG, "apply " + actionId);
+        }
+        switch (actionId) {
+            case ACTION_WELCOME:
+                return true;
+            case ACTION_LOCALE:
+                return applyLocale();
+            case ACTION_DATETIME:
+                return applyTimeZone();
+            case ACTION_LOCATION:
+                return applyLocation();
+            case ACTION_MICROG:
+                return applyMicroG();
+            case ACTION_NAVIGATION:
+                return applyNavigation();
+            default:
+                return false;
+        }
+    }
+
+    private boolean applyLocale() {
+        final String tag = mAnswers.getProperty(KEY_LOCALE);
+        if (tag == null) {
+            return false;
+        }
+        final Locale locale = Locale.forLanguageTag(tag.trim());
+        if (locale.getLanguage().isEmpty()) {
+            Log.w(TAG, "Invalid locale " + tag);
+            return false;
+        }
+        LocaleActivity.applyLocale(locale);
+        return true;
+    }
+
+    private boolean applyTimeZone() {
+        final String tzId = mAnswers.getProperty(KEY_TIMEZONE);
+        if (tzId == null) {
+            return false;
+        }
+        if (!Arrays.asList(TimeZone.getAvailableIDs()).contains(tzId.trim())) {
+            Log.w(TAG, "Invalid time zone " + tzId);
+            return false;
+        }
+        DateTimeActivity.applyTimeZone(mApp, tzId.trim());
+        return true;
+    }
+
+    private boolean applyLocation() {
+        final Boolean enabled = getBoolean(KEY_LOCATION);
+        if (enabled == null) {
+            return false;
+        }
+        final Boolean agps = getBoolean(KEY_LOCATION_AGPS);
+        LocationSettingsActivity.applyLocationSettings(mApp, enabled, agps == null || agps);
+        return true;
+    }
+
+    private boolean applyMicroG() {
+        final Boolean enabled = getBoolean(KEY_MICROG);
+        if (enabled == null) {
+            return false;
+        }
+        // The defaults switch follows the main switch unless answered
+        final Boolean defaults = getBoolean(KEY_MICROG_DEFAULTS);
+        MicroGActivity.applyMicroGSettings(mApp, enabled, enabled,
+                defaults != null ? defaults : enabled);
+        return true;
+    }
+
+    private boolean applyNavigation() {
+        final String mode = mAnswers.getProperty(KEY_NAVIGATION);
+        if (mode == null) {
+            return false;
+        }
+        final String overlay;
+        switch (mode.trim()) {
+            case "gestural":
+                overlay = NAV_BAR_MODE_GESTURAL_OVERLAY;
+                break;
+            case "2button":
+                overlay = NAV_BAR_MODE_2BUTTON_OVERLAY;
+                break;
+            case "3button":
+                overlay = NAV_BAR_MODE_3BUTTON_OVERLAY;
+                break;
+            default:
+                Log.w(TAG, "Invalid navigation mode " + mode);
+                return false;
+        }
+        if (!SetupWizardUtils.isPackageInstalled(mApp, overlay)) {
+            Log.w(TAG, "Navigation mode " + mode + " is not available");
+            return false;
+        }
+        Boolean hideHint = null;
+        if (NavigationSettingsActivity.isNavigationHintConfigurable(mApp)) {
+            hideHint = Boolean.TRUE.equals(getBoolean(KEY_NAVIGATION_HIDE_HINT));
+        }
+        NavigationSettingsActivity.applyNavigationSettings(mApp, overlay, hideHint);
+        return true;
+    }
+
+    private Boolean getBoolean(String key) {
+        final String value = mAnswers.getProperty(key);
+        return value != null ? Boolean.valueOf(value.trim()) : null;
+    }
+}
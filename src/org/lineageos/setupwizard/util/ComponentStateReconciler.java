@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.Context.MODE_PRIVATE;
+import static android.content.pm.PackageManager.DONT_KILL_APP;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.ComponentEnabledSetting;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import org.lineageos.setupwizard.wizardmanager.ActionAvailability;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Brings components and packages to a desired enabled state.
+ *
+ * <p>Each request is diffed against the current state, so entries that are already in the
+ * desired state cost no PackageManager write. Component changes are applied in one batch per
+ * package. Requests run one at a time on a background thread, in the order they were made.
+ *
+ * <p>The state each entry had before its first change is recorded, so that
+ * {@link #restoreRecorded} can undo exactly what setup changed.
+ */
+public class ComponentStateReconciler {
+
+    private static final String TAG = ComponentStateReconciler.class.getSimpleName();
+
+    private static final String PREFS_NAME = "ComponentStateChanges";
+    private static final String COMPONENT_PREFIX = "component:";
+    private static final String PACKAGE_PREFIX = "package:";
+
+    private static ComponentStateReconciler sInstance;
+
+    private final Context mContext;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, TAG));
+
+    /**
+     * Desired enabled states, as {@code PackageManager.COMPONENT_ENABLED_STATE_*} values.
+     */
+    public static class DesiredState {
+        private final LinkedHashMap<ComponentName, Integer> mComponents = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Integer> mPackages = new LinkedHashMap<>();
+
+        public DesiredState setComponent(ComponentName componentName, int state) {
+            mComponents.put(componentName, state);
+            return this;
+        }
+
+        public DesiredState setComponents(Collection<ComponentName> componentNames,
+                int state) {
+            for (ComponentName componentName : componentNames) {
+                mComponents.put(componentName, state);
+            }
+            return this;
+        }
+
+        public DesiredState setPackage(String packageName, int state) {
+            mPackages.put(packageName, state);
+            return this;
+        }
+    }
+
+    public static synchronized ComponentStateReconciler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ComponentStateReconciler(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ComponentStateReconciler(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return A future completed once {@code desired} is in effect, or exceptionally if it
+     * could not be applied.
+     */
+    public CompletableFuture<Void> apply(DesiredState desired) {
+        return CompletableFuture.runAsync(() -> reconcile(desired, true), mExecutor);
+    }
+
+    /**
+     * Puts back every recorded entry to the state it had before setup first changed it. The
+     * record is kept if that fails, in which case the future completes exceptionally.
+     *
+     * @param defaults The state to bring entries to that were not recorded, such as those
+     * changed by builds that did not record their changes. Recorded entries take precedence.
+     */
+    public CompletableFuture<Void> restoreRecorded(DesiredState defaults) {
+        return CompletableFuture.runAsync(() -> {
+            final SharedPreferences prefs = getPrefs();
+            final DesiredState original = new DesiredState();
+            original.mComponents.putAll(defaults.mComponents);
+            original.mPackages.putAll(defaults.mPackages);
+            for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                final String key = entry.getKey();
+                final int state = (Integer) entry.getValue();
+                if (key.startsWith(COMPONENT_PREFIX)) {
+                    final ComponentName componentName = ComponentName.unflattenFromString(
+                            key.substring(COMPONENT_PREFIX.length()));
+                    if (componentName != null) {
+                        original.setComponent(componentName, state);
+                    }
+                } else if (key.startsWith(PACKAGE_PREFIX)) {
+                    original.setPackage(key.substring(PACKAGE_PREFIX.length()), state);
+                }
+            }
+            reconcile(original, false);
+            prefs.edit().clear().commit();
+        }, mExecutor);
+    }
+
+    private SharedPreferences getPrefs() {
+        return mContext.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    private void reconcile(DesiredState desired, boolean record) {
+        Trace.beginSection("ComponentStateReconciler.reconcile");
+        final long start = SystemClock.elapsedRealtime();
+        final PackageManager pm = mContext.getPackageManager();
+        final SharedPreferences prefs = getPrefs();
+        final SharedPreferences.Editor recorded = prefs.edit();
+        final Map<String, List<ComponentEnabledSetting>> batches = new HashMap<>();
+        final Map<String, Integer> packages = new LinkedHashMap<>();
+        int unchanged = 0;
+        try {
+            for (Map.Entry<ComponentName, Integer> entry : desired.mComponents.entrySet()) {
+                final ComponentName componentName = entry.getKey();
+                final int current;
+                try {
+                    current = pm.getComponentEnabledSetting(componentName);
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Unknown component " + componentName);
+                    continue;
+                }
+                if (current == entry.getValue()) {
+                    unchanged++;
+                    continue;
+                }
+                final String key = COMPONENT_PREFIX + componentName.flattenToString();
+                if (record && !prefs.contains(key)) {
+                    recorded.putInt(key, current);
+                }
+                batches.computeIfAbsent(componentName.getPackageName(), k -> new ArrayList<>())
+                        .add(new ComponentEnabledSetting(componentName, entry.getValue(),
+                                DONT_KILL_APP));
+            }
+            for (Map.Entry<String, Integer> entry : desired.mPackages.entrySet()) {
+                final String packageName = entry.getKey();
+                final int current;
+                try {
+                    current = pm.getApplicationEnabledSetting(packageName);
+                } catch (IllegalArgumentException e) {
+                    if (LOGV) {
+                        Log.v(TAG, packageName + " is not installed");
+                    }
+                    continue;
+                }
+                if (current == entry.getValue()) {
+                    unchanged++;
+                    continue;
+                }
+                final String key = PACKAGE_PREFIX + packageName;
+                if (record && !prefs.contains(key)) {
+                    recorded.putInt(key, current);
+                }
+                packages.put(packageName, entry.getValue());
+            }
+
+            // Record before applying, so that a crash in between can still be undone
+            recorded.commit();
+            for (List<ComponentEnabledSetting> batch : batches.values()) {
+                pm.setComponentEnabledSettings(batch);
+            }
+            // There is no batched equivalent for whole packages
+            for (Map.Entry<String, Integer> entry : packages.entrySet()) {
+                pm.setApplicationEnabledSetting(entry.getKey(), entry.getValue(), 0);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to reconcile component state", e);
+            throw e;
+        } finally {
+            if (!batches.isEmpty() || !packages.isEmpty()) {
+                ActionAvailability.onComponentStateChanged();
+            }
+            for (String packageName : packages.keySet()) {
+                DeviceCapabilities.getInstance(mContext).invalidatePackage(packageName);
+            }
+            Trace.endSection();
+        }
+        if (LOGV) {
+            int components = 0;
+            for (List<ComponentEnabledSetting> batch : batches.values()) {
+                components += batch.size();
+            }
+            Log.v(TAG, "reconcile changed " + components + " components and "
+                    + packages.size() + " packages, skipped " + unchanged + " in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.Context.MODE_PRIVATE;
+import static android.content.pm.PackageManager.GET_ACTIVITIES;
+import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_2BUTTON_OVERLAY;
+import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_3BUTTON_OVERLAY;
+import static android.view.WindowManagerPolicyConstants.NAV_BAR_MODE_GESTURAL_OVERLAY;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.hardware.face.FaceManager;
+import android.hardware.fingerprint.FingerprintManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.os.Trace;
+import android.os.UserManager;
+import android.service.oemlock.OemLockManager;
+import android.util.Log;
+
+import org.lineageos.setupwizard.wizardmanager.ActionAvailability;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot of what the device can do, probed once instead of at every call site.
+ *
+ * <p>Facts that can only change with an OTA, such as hardware features, are persisted keyed by
+ * {@link Build#FINGERPRINT}, so that later launches on the same build skip probing them. Facts
+ * that can change at runtime are only kept in memory and have to be
+ * {@link #invalidate invalidated} by whoever observes the change. Packages can be installed or
+ * enabled during setup, so they are only kept in memory too, until the package changes.
+ */
+public class DeviceCapabilities {
+
+    private static final String TAG = DeviceCapabilities.class.getSimpleName();
+
+    private static final String PREFS_NAME = "DeviceCapabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+
+    // Probed along with the rest, as both the app and the navigation step need them
+    private static final String[] PREFETCHED_PACKAGES = {
+            NAV_BAR_MODE_GESTURAL_OVERLAY,
+            NAV_BAR_MODE_2BUTTON_OVERLAY,
+            NAV_BAR_MODE_3BUTTON_OVERLAY,
+    };
+
+    public enum Capability {
+        WIFI(true),
+        TELEPHONY(true),
+        LEANBACK(true),
+        FINGERPRINT(true),
+        FACE(true),
+        BLUETOOTH_DISABLED(true),
+        MANAGED_PROFILE(false),
+        BOOTLOADER_UNLOCKED(false),
+        OEM_UNLOCK_ALLOWED(false),
+        ETHERNET_CONNECTED(false);
+
+        final boolean mPersistent;
+
+        Capability(boolean persistent) {
+            mPersistent = persistent;
+        }
+    }
+
+    private static DeviceCapabilities sInstance;
+
+    private final Context mContext;
+    private final ConcurrentHashMap<Capability, Boolean> mValues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Boolean> mPackages = new ConcurrentHashMap<>();
+
+    private CompletableFuture<Void> mProbe;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent.getData() != null) {
+                invalidatePackage(intent.getData().getSchemeSpecificPart());
+            }
+        }
+    };
+
+    public static synchronized DeviceCapabilities getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DeviceCapabilities(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private DeviceCapabilities(Context context) {
+        mContext = context;
+        loadPersisted();
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(mPackageReceiver, filter);
+    }
+
+    /**
+     * Probes every fact not known yet in parallel, on background threads.
+     *
+     * @return A future completed once every fact is known.
+     */
+    public synchronized CompletableFuture<Void> probeAll() {
+        if (mProbe != null) {
+            return mProbe;
+        }
+        final long start = SystemClock.elapsedRealtime();
+        final List<CompletableFuture<Void>> probes = new ArrayList<>();
+        for (Capability capability : Capability.values()) {
+            if (!mValues.containsKey(capability)) {
+                probes.add(CompletableFuture.runAsync(() -> get(capability),
+                        AsyncTask.THREAD_POOL_EXECUTOR));
+            }
+        }
+        for (String packageName : PREFETCHED_PACKAGES) {
+            if (!mPackages.containsKey(packageName)) {
+                probes.add(CompletableFuture.runAsync(() -> isPackageInstalled(packageName),
+                        AsyncTask.THREAD_POOL_EXECUTOR));
+            }
+        }
+        final int count = probes.size();
+        mProbe = CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Unable to probe device capabilities", e);
+                    }
+                    if (LOGV) {
+                        Log.v(TAG, "probeAll probed " + count + " facts in "
+                                + (SystemClock.elapsedRealtime() - start) + "ms");
+                    }
+                });
+        return mProbe;
+    }
+
+    public boolean get(Capability capability) {
+        final Boolean cached = mValues.get(capability);
+        if (cached != null) {
+            return cached;
+        }
+        Trace.beginSection("DeviceCapabilities.probe:" + capability);
+        final boolean value;
+        try {
+            value = probe(capability);
+        } finally {
+            Trace.endSection();
+        }
+        mValues.put(capability, value);
+        if (capability.mPersistent) {
+            getPrefs().edit().putBoolean(capability.name(), value).apply();
+        }
+        return value;
+    }
+
+    /**
+     * @return Whether {@code packageName} is installed. Kept in memory until the package changes.
+     */
+    public boolean isPackageInstalled(String packageName) {
+        final Boolean cached = mPackages.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        boolean installed;
+        try {
+            mContext.getPackageManager().getPackageInfo(packageName, GET_ACTIVITIES);
+            installed = true;
+        } catch (PackageManager.NameNotFoundException e) {
+            installed = false;
+        }
+        mPackages.put(packageName, installed);
+        return installed;
+    }
+
+    /**
+     * Forgets whether {@code packageName} is installed. Called when it changes, including when
+     * we change its enabled state, as the resulting PACKAGE_CHANGED broadcast arrives
+     * asynchronously.
+     */
+    public void invalidatePackage(String packageName) {
+        if (mPackages.remove(packageName) != null && LOGV) {
+            Log.v(TAG, "invalidatePackage " + packageName);
+        }
+    }
+
+    /**
+     * Forgets {@code capability}, so that it is probed again when next asked for, and lets
+     * {@link ActionAvailability} evaluate its predicates again.
+     */
+    public void invalidate(Capability capability) {
+        final Boolean previous = mValues.remove(capability);
+        if (capability.mPersistent) {
+            getPrefs().edit().remove(capability.name()).apply();
+        }
+        if (previous != null) {
+            if (LOGV) {
+                Log.v(TAG, "invalidate " + capability + ", was " + previous);
+            }
+            ActionAvailability.onCapabilitiesChanged();
+        }
+    }
+
+    private SharedPreferences getPrefs() {
+        return mContext.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    private void loadPersisted() {
+        final SharedPreferences prefs = getPrefs();
+        if (!Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+            if (LOGV) {
+                Log.v(TAG, "No snapshot for " + Build.FINGERPRINT);
+            }
+            prefs.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+            return;
+        }
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            final String key = entry.getKey();
+            if (!(entry.getValue() instanceof Boolean)) {
+                continue;
+            }
+            final Boolean value = (Boolean) entry.getValue();
+            try {
+                final Capability capability = Capability.valueOf(key);
+                if (capability.mPersistent) {
+                    mValues.put(capability, value);
+                }
+            } catch (IllegalArgumentException e) {
+                // Written by another version of the app, probe it again
+            }
+        }
+        if (LOGV) {
+            Log.v(TAG, "Loaded " + mValues.size() + " capabilities for " + Build.FINGERPRINT);
+        }
+    }
+
+    private boolean probe(Capability capability) {
+        final PackageManager packageManager = mContext.getPackageManager();
+        switch (capability) {
+            case WIFI:
+                return packageManager.hasSystemFeature(PackageManager.FEATURE_WIFI);
+            case TELEPHONY:
+                return packageManager.hasSystemFeature(PackageManager.FEATURE_TELEPHONY);
+            case LEANBACK:
+                return packageManager.hasSystemFeature(PackageManager.FEATURE_LEANBACK);
+            case FINGERPRINT:
+                if (packageManager.hasSystemFeature(PackageManager.FEATURE_FINGERPRINT)) {
+                    FingerprintManager fingerprintManager =
+                            mContext.getSystemService(FingerprintManager.class);
+                    return fingerprintManager.isHardwareDetected();
+                }
+                return false;
+            case FACE:
+                if (packageManager.hasSystemFeature(PackageManager.FEATURE_FACE)) {
+                    FaceManager faceManager = mContext.getSystemService(FaceManager.class);
+                    return faceManager.isHardwareDetected();
+                }
+                return false;
+            case BLUETOOTH_DISABLED:
+                return SystemProperties.getBoolean("config.disable_bluetooth", false);
+            case MANAGED_PROFILE:
+                return mContext.getSystemService(UserManager.class).isManagedProfile();
+            case BOOTLOADER_UNLOCKED: {
+                OemLockManager oemLockManager = mContext.getSystemService(OemLockManager.class);
+                if (oemLockManager != null) {
+                    return oemLockManager.isDeviceOemUnlocked();
+                }
+                return true; // Default to unlocked
+            }
+            case OEM_UNLOCK_ALLOWED: {
+                OemLockManager oemLockManager = mContext.getSystemService(OemLockManager.class);
+                if (oemLockManager != null) {
+                    return oemLockManager.isOemUnlockAllowed();
+                }
+                return true; // Default to unlock allowed
+            }
+            case ETHERNET_CONNECTED: {
+                ConnectivityManager cm = mContext.getSystemService(ConnectivityManager.class);
+                NetworkInfo ni = cm.getActiveNetworkInfo();
+                return ni != null && ni.getType() == ConnectivityManager.TYPE_ETHERNET;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown capability " + capability);
+        }
+    }
+}
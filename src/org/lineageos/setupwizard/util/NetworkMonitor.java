@@ -40,7 +40,10 @@ public class NetworkMonitor {
             if (LOGV) {
                 Log.v(TAG, intent.toString());
             }
+            DeviceCapabilities.getInstance(context).invalidate(
+                    DeviceCapabilities.Capability.ETHERNET_CONNECTED);
             NetworkMonitor.this.updateNetworkStatus(context);
+            WizardEventBus.getInstance(context).post(WizardEventBus.Event.NETWORK_CHANGED);
         }
     };
     private Context mContext = null;
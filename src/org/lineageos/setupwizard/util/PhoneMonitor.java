@@ -92,6 +92,7 @@ public class PhoneMonitor {
                 final int sub = intent.getIntExtra(PhoneConstants.SUBSCRIPTION_KEY, -1);
                 final int state = mTelephony.getSimState(sub);
                 simStateChanged(sub, state);
+                WizardEventBus.getInstance(context).post(WizardEventBus.Event.SIM_CHANGED);
             } else if (intent.getAction()
                     .equals(TelephonyIntents.ACTION_DEFAULT_DATA_SUBSCRIPTION_CHANGED)) {
                 ddsHasChanged(intent.getIntExtra(PhoneConstants.SUBSCRIPTION_KEY, -1));
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.google.android.setupcompat.util.WizardManagerHelper;
+
+import org.lineageos.setupwizard.DateTimeActivity;
+import org.lineageos.setupwizard.LocaleActivity;
+import org.lineageos.setupwizard.wizardmanager.WizardScript;
+import org.lineageos.setupwizard.wizardmanager.WizardScriptRegistry;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Warms the caches the first steps read from, so that they are filled before the user gets to
+ * them rather than while they wait.
+ *
+ * <p>Covers the wizard script, the device capabilities, and the locale and time zone lists.
+ * Runs at most once per process, and not at all once setup is complete.
+ */
+public class Prewarmer {
+
+    private static final String TAG = Prewarmer.class.getSimpleName();
+
+    private static CompletableFuture<Void> sPrewarm;
+
+    /**
+     * @return A future completed once every cache is warm.
+     */
+    public static synchronized CompletableFuture<Void> prewarm(Context context) {
+        if (sPrewarm != null) {
+            return sPrewarm;
+        }
+        final Context appContext = context.getApplicationContext();
+        if (WizardManagerHelper.isUserSetupComplete(appContext)
+                && !SetupWizardUtils.isManagedProfile(appContext)) {
+            sPrewarm = CompletableFuture.completedFuture(null);
+            return sPrewarm;
+        }
+        final long start = SystemClock.elapsedRealtime();
+        final CompletableFuture<Void> capabilities =
+                DeviceCapabilities.getInstance(appContext).probeAll();
+        // Loading is traced by the registry itself
+        final CompletableFuture<WizardScript> script = capabilities.thenComposeAsync(
+                result -> WizardScriptRegistry.getInstance(appContext).preload(
+                        SetupWizardUtils.getWizardScriptUri(appContext)),
+                AsyncTask.THREAD_POOL_EXECUTOR);
+        final CompletableFuture<Void> locales = CompletableFuture.runAsync(() -> run("locales",
+                () -> LocaleActivity.getLocales(appContext)), AsyncTask.THREAD_POOL_EXECUTOR);
+        final CompletableFuture<Void> timeZones = CompletableFuture.runAsync(() -> run(
+                "timeZones", () -> DateTimeActivity.getSortedTimeZones(appContext)),
+                AsyncTask.THREAD_POOL_EXECUTOR);
+        sPrewarm = CompletableFuture.allOf(capabilities, script, locales, timeZones)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Unable to prewarm", e);
+                    }
+                    if (LOGV) {
+                        Log.v(TAG, "prewarm done in "
+                                + (SystemClock.elapsedRealtime() - start) + "ms");
+                    }
+                });
+        return sPrewarm;
+    }
+
+    /**
+     * Warms the caches keyed by locale again, once another locale has been applied.
+     */
+    public static void onLocaleApplied(Context context) {
+        final Context appContext = context.getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> run("timeZones",
+                () -> DateTimeActivity.getSortedTimeZones(appContext)));
+    }
+
+    private static void run(String name, Runnable task) {
+        Trace.beginSection(TAG + ":" + name);
+        try {
+            task.run();
+        } finally {
+            Trace.endSection();
+        }
+    }
+}
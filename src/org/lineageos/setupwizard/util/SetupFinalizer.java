@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.pm.PackageManager.GET_RECEIVERS;
+import static android.content.pm.PackageManager.GET_SERVICES;
+import static android.os.UserHandle.USER_CURRENT;
+
+import static org.lineageos.setupwizard.SetupWizardApp.NAVIGATION_OPTION_KEY;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.om.IOverlayManager;
+import android.os.AsyncTask;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.ServiceManager;
+import android.provider.Settings;
+import android.util.Log;
+
+import org.lineageos.setupwizard.SetupWizardApp;
+import org.lineageos.setupwizard.wizardmanager.WizardManager;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The side effects of finishing setup, as a {@link TaskGraph}.
+ *
+ * <p>{@code FinishActivity} starts the graph when Start is pressed, so that independent work
+ * overlaps the finish animation. That includes the provisioned settings writes and what
+ * follows from them. Work the user would see, such as the navigation overlay and the status
+ * bar, waits for {@link #onAnimationFinished()}. Disabling our own components waits for
+ * {@link #finish()}, called from {@code SetupWizardExitService} once the last step has been
+ * left. The graph runs once per setup run; later calls only wait for it. Setup can be run
+ * again in the same process, as SetupWizardTestActivity does, so {@link #start()} and
+ * {@link #finish()} build a new graph once the previous one is done.
+ */
+public class SetupFinalizer {
+
+    private static final String TAG = SetupFinalizer.class.getSimpleName();
+
+    private static SetupFinalizer sInstance;
+
+    private final Context mContext;
+
+    private TaskGraph mGraph;
+    private TaskGraph.Node mAnimationGate;
+    private TaskGraph.Node mExitGate;
+    private TaskGraph.Node mHome;
+
+    public static synchronized SetupFinalizer getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SetupFinalizer(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private SetupFinalizer(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Starts the tasks that are safe to run during the finish animation, unless already
+     * started for this run.
+     */
+    public synchronized void start() {
+        if (mGraph == null || mGraph.isDone()) {
+            mGraph = buildGraph();
+        }
+        mGraph.start();
+    }
+
+    /**
+     * Releases the tasks that change what is on screen, once the finish animation is done or
+     * the finish step has been left.
+     */
+    public synchronized void onAnimationFinished() {
+        ensureStarted();
+        mGraph.open(mAnimationGate);
+    }
+
+    /**
+     * @return A future completed once the home activity can be launched, i.e. ours is
+     * disabled.
+     */
+    public synchronized CompletableFuture<Void> whenHomeReady() {
+        ensureStarted();
+        return mGraph.whenDone(mHome);
+    }
+
+    /**
+     * Runs every remaining task.
+     *
+     * @return A future completed once every task is done.
+     */
+    public synchronized CompletableFuture<Void> finish() {
+        start();
+        mGraph.open(mAnimationGate);
+        mGraph.open(mExitGate);
+        return mGraph.whenDone();
+    }
+
+    /**
+     * Like {@link #start()}, but keeps the graph of this run once it is done, for the calls
+     * that only follow it.
+     */
+    private void ensureStarted() {
+        if (mGraph == null) {
+            mGraph = buildGraph();
+        }
+        mGraph.start();
+    }
+
+    private TaskGraph buildGraph() {
+        final TaskGraph graph = new TaskGraph("SetupFinalizer",
+                AsyncTask.THREAD_POOL_EXECUTOR);
+        final ContentResolver contentResolver = mContext.getContentResolver();
+        mAnimationGate = graph.addGate("animation");
+        mExitGate = graph.addGate("exit");
+
+        // Safe during the animation
+        final TaskGraph.Node captivePortal = graph.addTask("captivePortal", () -> {
+            if (SetupWizardUtils.isOwner()) {
+                SetupWizardUtils.enableCaptivePortalDetection(mContext);
+            }
+        });
+
+        final TaskGraph.Node provisioned = graph.addTask("provisioned", () -> {
+            Settings.Global.putInt(contentResolver, Settings.Global.DEVICE_PROVISIONED, 1);
+            Settings.Secure.putInt(contentResolver, Settings.Secure.USER_SETUP_COMPLETE, 1);
+            if (SetupWizardUtils.hasLeanback(mContext)) {
+                Settings.Secure.putInt(contentResolver,
+                        Settings.Secure.TV_USER_SETUP_COMPLETE, 1);
+            }
+        });
+
+        // Visible, so held back until the animation is done
+        final TaskGraph.Node navigation = graph.addTask("navigationOverlay",
+                this::applyNavigationOption, mAnimationGate);
+        final TaskGraph.Node statusBar = graph.addTask("statusBar",
+                () -> SetupWizardUtils.enableStatusBar(mContext), mAnimationGate);
+        mHome = graph.addTask("home", () -> SetupWizardUtils.disableHome(mContext).join(),
+                provisioned);
+        final TaskGraph.Node finished = graph.addTask("finishedBroadcast", () ->
+                mContext.sendStickyBroadcastAsUser(new Intent(SetupWizardApp.ACTION_FINISHED),
+                        Binder.getCallingUserHandle()), mHome);
+        final TaskGraph.Node checkIn = graph.addTask("microGCheckIn",
+                () -> SetupWizardUtils.sendMicroGCheckInBroadcast(mContext), provisioned);
+
+        // The last step still routes through WizardManager, and the journal must survive
+        // until it is left
+        final TaskGraph.Node wizardManager = graph.addTask("wizardManager",
+                () -> SetupWizardUtils.disableComponent(mContext, WizardManager.class).join(),
+                mExitGate);
+        final TaskGraph.Node journal = graph.addTask("journal",
+                () -> WizardSessionJournal.clear(mContext), mExitGate);
+        // Disables the exit service itself, so it goes last
+        graph.addTask("componentSets", () -> SetupWizardUtils.disableComponentSets(mContext,
+                GET_RECEIVERS | GET_SERVICES).join(), captivePortal, navigation, statusBar, finished,
+                checkIn, wizardManager, journal);
+        return graph;
+    }
+
+    private void applyNavigationOption() {
+        final Bundle settingsBundle = ((SetupWizardApp) mContext).getSettingsBundle();
+        if (!settingsBundle.containsKey(NAVIGATION_OPTION_KEY)) {
+            return;
+        }
+        final IOverlayManager overlayManager = IOverlayManager.Stub.asInterface(
+                ServiceManager.getService(Context.OVERLAY_SERVICE));
+        final String selectedNavMode = settingsBundle.getString(NAVIGATION_OPTION_KEY);
+        try {
+            overlayManager.setEnabledExclusiveInCategory(selectedNavMode, USER_CURRENT);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to enable " + selectedNavMode, e);
+        }
+    }
+}
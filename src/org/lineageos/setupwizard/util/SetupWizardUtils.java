@@ -21,7 +21,6 @@ import static android.content.Context.MODE_PRIVATE;
 import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DEFAULT;
 import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
 import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_ENABLED;
-import static android.content.pm.PackageManager.DONT_KILL_APP;
 import static android.content.pm.PackageManager.GET_ACTIVITIES;
 import static android.content.pm.PackageManager.GET_RECEIVERS;
 import static android.content.pm.PackageManager.GET_SERVICES;
@@ -31,7 +30,6 @@ import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
 
 import android.app.StatusBarManager;
 import android.content.ComponentName;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -40,31 +38,23 @@ import android.content.pm.ComponentInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ServiceInfo;
-import android.hardware.face.FaceManager;
-import android.hardware.fingerprint.FingerprintManager;
-import android.net.ConnectivityManager;
-import android.os.Binder;
-import android.os.Build;
 import android.os.SystemProperties;
 import android.os.UserHandle;
-import android.os.UserManager;
 import android.provider.Settings;
-import android.service.oemlock.OemLockManager;
 import android.telephony.ServiceState;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
-import org.lineageos.setupwizard.BiometricActivity;
-import org.lineageos.setupwizard.BluetoothSetupActivity;
-import org.lineageos.setupwizard.BootloaderWarningActivity;
-import org.lineageos.setupwizard.NetworkSetupActivity;
+import org.lineageos.setupwizard.R;
 import org.lineageos.setupwizard.SetupWizardApp;
-import org.lineageos.setupwizard.SimMissingActivity;
-import org.lineageos.setupwizard.wizardmanager.WizardManager;
+import org.lineageos.setupwizard.util.DeviceCapabilities.Capability;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class SetupWizardUtils {
 
@@ -76,6 +66,9 @@ public class SetupWizardUtils {
 
     private static final String PROP_BUILD_DATE = "ro.build.date.utc";
 
+    // Keyed by PackageManager flags
+    private static final HashMap<Integer, List<ComponentName>> sComponentSets = new HashMap<>();
+
     private SetupWizardUtils() {
     }
 
@@ -99,13 +92,11 @@ public class SetupWizardUtils {
     }
 
     public static boolean hasWifi(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        return packageManager.hasSystemFeature(PackageManager.FEATURE_WIFI);
+        return DeviceCapabilities.getInstance(context).get(Capability.WIFI);
     }
 
     public static boolean hasTelephony(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        return packageManager.hasSystemFeature(PackageManager.FEATURE_TELEPHONY);
+        return DeviceCapabilities.getInstance(context).get(Capability.TELEPHONY);
     }
 
     public static boolean isRadioReady(Context context, ServiceState state) {
@@ -125,7 +116,20 @@ public class SetupWizardUtils {
     }
 
     public static boolean isManagedProfile(Context context) {
-        return context.getSystemService(UserManager.class).isManagedProfile();
+        return DeviceCapabilities.getInstance(context).get(Capability.MANAGED_PROFILE);
+    }
+
+    /**
+     * @return The URI of the wizard script to run for the current user.
+     */
+    public static String getWizardScriptUri(Context context) {
+        if (isOwner()) {
+            return context.getString(R.string.lineage_wizard_script_uri);
+        } else if (isManagedProfile(context)) {
+            return context.getString(R.string.lineage_wizard_script_managed_profile_uri);
+        } else {
+            return context.getString(R.string.lineage_wizard_script_user_uri);
+        }
     }
 
     public static void disableCaptivePortalDetection(Context context) {
@@ -184,52 +188,29 @@ public class SetupWizardUtils {
     }
 
     public static boolean isPackageInstalled(Context context, String packageName) {
-        PackageManager pm = context.getPackageManager();
-        try {
-            pm.getPackageInfo(packageName, GET_ACTIVITIES);
-            return true;
-        } catch (PackageManager.NameNotFoundException e) {
-            return false;
-        }
+        return DeviceCapabilities.getInstance(context).isPackageInstalled(packageName);
     }
 
-    public static void finishSetupWizard(Context context) {
-        ContentResolver contentResolver = context.getContentResolver();
-        Settings.Global.putInt(contentResolver,
-                Settings.Global.DEVICE_PROVISIONED, 1);
-        Settings.Secure.putInt(contentResolver,
-                Settings.Secure.USER_SETUP_COMPLETE, 1);
-        if (hasLeanback(context)) {
-            Settings.Secure.putInt(contentResolver,
-                    Settings.Secure.TV_USER_SETUP_COMPLETE, 1);
-        }
-
-        disableComponent(context, WizardManager.class);
-        disableHome(context);
-        context.sendStickyBroadcastAsUser(
-                new Intent(SetupWizardApp.ACTION_FINISHED),
-                Binder.getCallingUserHandle());
-        disableComponentSets(context, GET_RECEIVERS | GET_SERVICES);
-        enableStatusBar(context);
-
-        sendMicroGCheckInBroadcast(context);
+    /**
+     * Runs every finalization task not run yet.
+     *
+     * @return A future completed once every task is done.
+     * @see SetupFinalizer
+     */
+    public static CompletableFuture<Void> finishSetupWizard(Context context) {
+        return SetupFinalizer.getInstance(context).finish();
     }
 
-    public static boolean isBluetoothDisabled() {
-        return SystemProperties.getBoolean("config.disable_bluetooth", false);
+    public static boolean isBluetoothDisabled(Context context) {
+        return DeviceCapabilities.getInstance(context).get(Capability.BLUETOOTH_DISABLED);
     }
 
     public static boolean isEthernetConnected(Context context) {
-        ConnectivityManager cm = (ConnectivityManager) context.
-                getSystemService(Context.CONNECTIVITY_SERVICE);
-
-        return (cm.getActiveNetworkInfo() != null &&
-                cm.getActiveNetworkInfo().getType() == ConnectivityManager.TYPE_ETHERNET);
+        return DeviceCapabilities.getInstance(context).get(Capability.ETHERNET_CONNECTED);
     }
 
     public static boolean hasLeanback(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        return packageManager.hasSystemFeature(PackageManager.FEATURE_LEANBACK);
+        return DeviceCapabilities.getInstance(context).get(Capability.LEANBACK);
     }
 
     public static boolean hasBiometric(Context context) {
@@ -237,25 +218,11 @@ public class SetupWizardUtils {
     }
 
     public static boolean hasFingerprint(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        if (packageManager.hasSystemFeature(PackageManager.FEATURE_FINGERPRINT)) {
-            FingerprintManager fingerprintManager = (FingerprintManager)
-                    context.getSystemService(Context.FINGERPRINT_SERVICE);
-            return fingerprintManager.isHardwareDetected();
-        } else {
-            return false;
-        }
+        return DeviceCapabilities.getInstance(context).get(Capability.FINGERPRINT);
     }
 
     public static boolean hasFace(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        if (packageManager.hasSystemFeature(PackageManager.FEATURE_FACE)) {
-            FaceManager faceManager = (FaceManager)
-                    context.getSystemService(Context.FACE_SERVICE);
-            return faceManager.isHardwareDetected();
-        } else {
-            return false;
-        }
+        return DeviceCapabilities.getInstance(context).get(Capability.FACE);
     }
 
     public static boolean simMissing() {
@@ -271,45 +238,21 @@ public class SetupWizardUtils {
     }
 
     public static boolean isBootloaderUnlocked(Context context) {
-        OemLockManager oemLockManager = context.getSystemService(OemLockManager.class);
-        if (oemLockManager != null) {
-            return oemLockManager.isDeviceOemUnlocked();
-        }
-        return true; // Default to unlocked
+        return DeviceCapabilities.getInstance(context).get(Capability.BOOTLOADER_UNLOCKED);
     }
 
     public static boolean isOemunlockAllowed(Context context) {
-        OemLockManager oemLockManager = context.getSystemService(OemLockManager.class);
-        if (oemLockManager != null) {
-            return oemLockManager.isOemUnlockAllowed();
-        }
-        return true; // Default to unlock allowed
-    }
-
-    public static void disableComponentsForMissingFeatures(Context context) {
-        if (!hasLeanback(context) || isBluetoothDisabled()) {
-            disableComponent(context, BluetoothSetupActivity.class);
-        }
-        if (!hasBiometric(context)) {
-            disableComponent(context, BiometricActivity.class);
-        }
-        if (!hasTelephony(context) || !simMissing()) {
-            disableComponent(context, SimMissingActivity.class);
-        }
-        if ((!hasWifi(context) && !hasTelephony(context)) || isEthernetConnected(context)) {
-            disableComponent(context, NetworkSetupActivity.class);
-        }
-        if (!isBootloaderUnlocked(context) || Build.IS_DEBUGGABLE) {
-            disableComponent(context, BootloaderWarningActivity.class);
-        }
+        return DeviceCapabilities.getInstance(context).get(Capability.OEM_UNLOCK_ALLOWED);
     }
 
-    public static void disableHome(Context context) {
+    public static CompletableFuture<Void> disableHome(Context context) {
         ComponentName homeComponent = getHomeComponent(context);
         if (homeComponent != null) {
-            setComponentEnabledState(context, homeComponent, COMPONENT_ENABLED_STATE_DISABLED);
+            return setComponentEnabledState(context, homeComponent,
+                    COMPONENT_ENABLED_STATE_DISABLED);
         } else {
             Log.w(TAG, "Home component not found. Skipping.");
+            return CompletableFuture.completedFuture(null);
         }
     }
 
@@ -324,45 +267,65 @@ public class SetupWizardUtils {
         return comp;
     }
 
-    public static void disableComponentSets(Context context, int flags) {
-        setComponentListEnabledState(context, getComponentSets(context, flags),
+    public static CompletableFuture<Void> disableComponentSets(Context context, int flags) {
+        return setComponentListEnabledState(context, getComponentSets(context, flags),
                 COMPONENT_ENABLED_STATE_DISABLED);
     }
 
-    public static void disableComponent(Context context, Class cls) {
-        setComponentEnabledState(context, new ComponentName(context, cls),
+    public static CompletableFuture<Void> disableComponent(Context context, Class cls) {
+        return setComponentEnabledState(context, new ComponentName(context, cls),
                 COMPONENT_ENABLED_STATE_DISABLED);
     }
 
-    public static void enableComponent(Context context, Class<?> cls) {
-        setComponentEnabledState(context, new ComponentName(context, cls),
+    public static CompletableFuture<Void> enableComponent(Context context, Class<?> cls) {
+        return setComponentEnabledState(context, new ComponentName(context, cls),
                 COMPONENT_ENABLED_STATE_ENABLED);
     }
 
-    public static void resetComponentSets(Context context, int flags) {
-        setComponentListEnabledState(context, getComponentSets(context, flags),
+    public static CompletableFuture<Void> resetComponentSets(Context context, int flags) {
+        return setComponentListEnabledState(context, getComponentSets(context, flags),
                 COMPONENT_ENABLED_STATE_DEFAULT);
     }
 
-    public static void resetComponent(Context context, Class<?> cls) {
-        setComponentEnabledState(context, new ComponentName(context, cls),
+    public static CompletableFuture<Void> resetComponent(Context context, Class<?> cls) {
+        return setComponentEnabledState(context, new ComponentName(context, cls),
                 COMPONENT_ENABLED_STATE_DEFAULT);
     }
 
-    public static void setComponentEnabledState(Context context, ComponentName componentName,
-            int enabledState) {
-        context.getPackageManager().setComponentEnabledSetting(componentName,
-                enabledState, DONT_KILL_APP);
+    /**
+     * @return A future completed once the state is in effect.
+     * @see ComponentStateReconciler
+     */
+    public static CompletableFuture<Void> setComponentEnabledState(Context context,
+            ComponentName componentName, int enabledState) {
+        return ComponentStateReconciler.getInstance(context).apply(
+                new ComponentStateReconciler.DesiredState()
+                        .setComponent(componentName, enabledState));
     }
 
-    public static void setComponentListEnabledState(Context context,
+    public static CompletableFuture<Void> setComponentListEnabledState(Context context,
             List<ComponentName> componentNames, int enabledState) {
-        for (ComponentName componentName : componentNames) {
-            setComponentEnabledState(context, componentName, enabledState);
-        }
+        return ComponentStateReconciler.getInstance(context).apply(
+                new ComponentStateReconciler.DesiredState()
+                        .setComponents(componentNames, enabledState));
     }
 
+    /**
+     * @return Our components of the types in {@code flags}. Cached, as they only change when
+     * the APK is replaced, which restarts the process.
+     */
     public static List<ComponentName> getComponentSets(Context context, int flags) {
+        synchronized (sComponentSets) {
+            List<ComponentName> componentNames = sComponentSets.get(flags);
+            if (componentNames == null) {
+                componentNames = Collections.unmodifiableList(queryComponentSets(context, flags));
+                sComponentSets.put(flags, componentNames);
+            }
+            return componentNames;
+        }
+    }
+
+    private static List<ComponentName> queryComponentSets(Context context, int flags) {
         int i = 0;
         List<ComponentName> componentNames = new ArrayList();
         try {
@@ -393,7 +356,7 @@ public class SetupWizardUtils {
         return componentNames;
     }
 
-    private static void sendMicroGCheckInBroadcast(Context context) {
+    static void sendMicroGCheckInBroadcast(Context context) {
         Intent i = new Intent("android.server.checkin.CHECKIN");
         i.setPackage(GMS_PACKAGE);
         context.sendBroadcast(i);
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Startup work of the app process, as a {@link TaskGraph}.
+ *
+ * <p>Critical tasks are done by the time {@link #run()} returns, as the first step relies on
+ * them. They run inline on the thread calling {@link #run()}, in the order they were added,
+ * so that it never waits on the thread pool; they may thus only depend on each other.
+ * Deferrable tasks keep running on the thread pool afterwards. Main thread tasks, such as those
+ * that need a looper, are critical.
+ */
+public class StartupTasks {
+
+    private static final String TAG = StartupTasks.class.getSimpleName();
+
+    public static final boolean CRITICAL = true;
+    public static final boolean DEFERRABLE = false;
+
+    private final TaskGraph mGraph;
+    private final List<TaskGraph.Node> mCritical = new ArrayList<>();
+    private TaskGraph.Node mLastCritical;
+
+    public StartupTasks(String name) {
+        mGraph = new TaskGraph(name, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code critical} and one of {@code dependencies} is
+     * not.
+     */
+    public TaskGraph.Node add(String name, boolean critical, Runnable task,
+            TaskGraph.Node... dependencies) {
+        if (!critical) {
+            return mGraph.addTask(name, task, dependencies);
+        }
+        for (TaskGraph.Node dependency : dependencies) {
+            if (!mCritical.contains(dependency)) {
+                throw new IllegalArgumentException(name + " is critical, but "
+                        + dependency.getName() + " is not");
+            }
+        }
+        // Chained so that they run in order, all inline in run(); the chain already orders
+        // them after their dependencies
+        final TaskGraph.Node node = mLastCritical == null
+                ? mGraph.addTask(name, Runnable::run, task)
+                : mGraph.addTask(name, Runnable::run, task, mLastCritical);
+        mLastCritical = node;
+        mCritical.add(node);
+        return node;
+    }
+
+    public TaskGraph.Node addOnMainThread(String name, Runnable task) {
+        return add(name, CRITICAL, task);
+    }
+
+    /**
+     * Starts every task and runs the critical ones. Must be called on the main thread.
+     *
+     * @return A future completed once the deferrable tasks are done too.
+     */
+    public CompletableFuture<Void> run() {
+        final long start = SystemClock.elapsedRealtime();
+        Trace.beginSection(TAG + ".critical");
+        try {
+            // Runs the critical tasks inline, so they are done once it returns
+            mGraph.start();
+        } finally {
+            Trace.endSection();
+        }
+        if (LOGV) {
+            Log.v(TAG, mCritical.size() + " critical tasks done in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+        return mGraph.whenDone();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.Context.MODE_PRIVATE;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Latency distribution of the step transitions and of the subactivities each step hands over
+ * to, kept across runs.
+ *
+ * <p>Latencies are counted in fixed buckets per action and {@link Phase}, so that the tail of
+ * each step can be read back from the prefs, or from the log under LOGV.
+ */
+public class StepLatency {
+
+    private static final String TAG = StepLatency.class.getSimpleName();
+
+    private static final String PREFS_NAME = "StepLatency";
+
+    // Upper bounds of the buckets; the last bucket takes everything above
+    private static final long[] BUCKETS_MILLIS = {
+            25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000,
+    };
+
+    public enum Phase {
+        // From starting the subactivity until it covers the step
+        SHOWN,
+        // From starting the subactivity until its result comes back
+        RESULT,
+        // From leaving the previous step until the step is resumed; recorded per route, as
+        // <step>@<route>
+        TRANSITION,
+    }
+
+    private static StepLatency sInstance;
+
+    private final Context mContext;
+
+    public static synchronized StepLatency getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StepLatency(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private StepLatency(Context context) {
+        mContext = context;
+    }
+
+    public void record(String actionId, Phase phase, long millis) {
+        final String key = actionId + "/" + phase + "/" + getBucketName(getBucket(millis));
+        final SharedPreferences prefs = getPrefs();
+        prefs.edit().putInt(key, prefs.getInt(key, 0) + 1).apply();
+        if (LOGV) {
+            Log.v(TAG, actionId + " " + phase + " took " + millis + "ms; " + dump(actionId, phase));
+        }
+    }
+
+    /**
+     * Records that the subactivity of {@code actionId} did not show in time.
+     */
+    public void recordStall(String actionId) {
+        final String key = actionId + "/stalls";
+        final SharedPreferences prefs = getPrefs();
+        final int stalls = prefs.getInt(key, 0) + 1;
+        prefs.edit().putInt(key, stalls).apply();
+        Log.w(TAG, actionId + " stalled, " + stalls + " times so far");
+    }
+
+    /**
+     * @return The distribution of {@code phase} of {@code actionId}, as bucket=count pairs.
+     */
+    public String dump(String actionId, Phase phase) {
+        final SharedPreferences prefs = getPrefs();
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i <= BUCKETS_MILLIS.length; i++) {
+            final String bucket = getBucketName(i);
+            final int count = prefs.getInt(actionId + "/" + phase + "/" + bucket, 0);
+            if (count > 0) {
+                sb.append(sb.length() > 0 ? " " : "").append(bucket).append('=').append(count);
+            }
+        }
+        return sb.toString();
+    }
+
+    private SharedPreferences getPrefs() {
+        return mContext.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    private static int getBucket(long millis) {
+        for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+            if (millis <= BUCKETS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS_MILLIS.length;
+    }
+
+    private static String getBucketName(int bucket) {
+        return bucket < BUCKETS_MILLIS.length ? "le" + BUCKETS_MILLIS[bucket]
+                : "gt" + BUCKETS_MILLIS[BUCKETS_MILLIS.length - 1];
+    }
+}
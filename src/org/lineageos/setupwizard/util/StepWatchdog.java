@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Watches a subactivity a step hands over to, so that one that never shows does not block the
+ * flow.
+ *
+ * <p>Armed when the subactivity is started. If it has not covered the step within the
+ * action's {@code wizard:timeout}, it is considered stalled and {@code onStall} runs. Once it
+ * shows, the user is in control and there is no limit. Both how long it took to show and to
+ * return a result are recorded in {@link StepLatency}. Must only be used on the main thread.
+ */
+public class StepWatchdog {
+
+    private static final String TAG = StepWatchdog.class.getSimpleName();
+
+    private final Context mContext;
+    private final String mActionId;
+    private final int mTimeoutMillis;
+    private final Runnable mOnStall;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private long mStart;
+    private boolean mIsShown;
+    private boolean mIsStalled;
+
+    private final Runnable mStall = new Runnable() {
+        @Override
+        public void run() {
+            Log.w(TAG, mActionId + " did not show within " + mTimeoutMillis + "ms");
+            mStart = 0;
+            mIsStalled = true;
+            StepLatency.getInstance(mContext).recordStall(mActionId);
+            mOnStall.run();
+        }
+    };
+
+    /**
+     * @param timeoutMillis How long the subactivity may take to show, or 0 for no limit.
+     */
+    public StepWatchdog(Context context, String actionId, int timeoutMillis, Runnable onStall) {
+        mContext = context.getApplicationContext();
+        mActionId = actionId;
+        mTimeoutMillis = timeoutMillis;
+        mOnStall = onStall;
+    }
+
+    public void onStarted() {
+        mStart = SystemClock.elapsedRealtime();
+        mIsShown = false;
+        mIsStalled = false;
+        mHandler.removeCallbacks(mStall);
+        if (mTimeoutMillis > 0) {
+            mHandler.postDelayed(mStall, mTimeoutMillis);
+        }
+        if (LOGV) {
+            Log.v(TAG, "watching " + mActionId + " timeout=" + mTimeoutMillis);
+        }
+    }
+
+    /**
+     * Called once the subactivity covers the step, i.e. the step is stopped.
+     */
+    public void onShown() {
+        if (mStart == 0 || mIsShown) {
+            return;
+        }
+        mIsShown = true;
+        mHandler.removeCallbacks(mStall);
+        StepLatency.getInstance(mContext).record(mActionId, StepLatency.Phase.SHOWN,
+                SystemClock.elapsedRealtime() - mStart);
+    }
+
+    public void onResult() {
+        if (mStart == 0) {
+            return;
+        }
+        onShown();
+        StepLatency.getInstance(mContext).record(mActionId, StepLatency.Phase.RESULT,
+                SystemClock.elapsedRealtime() - mStart);
+        mStart = 0;
+    }
+
+    /**
+     * @return Whether the subactivity was given up on, so that its late result is to be
+     * ignored.
+     */
+    public boolean hasStalled() {
+        return mIsStalled;
+    }
+
+    public void cancel() {
+        mHandler.removeCallbacks(mStall);
+        mStart = 0;
+    }
+}
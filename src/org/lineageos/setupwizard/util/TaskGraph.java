@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Set of tasks run on an executor as soon as their dependencies are done.
+ *
+ * <p>A gate is a node without work that is opened explicitly, to hold back the tasks that
+ * depend on it until some outside event, such as the end of an animation. Nothing runs before
+ * {@link #start()}. A task that throws is logged and counts as done, so that one failed side
+ * effect does not hold back the rest of the graph.
+ */
+public class TaskGraph {
+
+    private static final String TAG = TaskGraph.class.getSimpleName();
+
+    public static class Node {
+        private final String mName;
+        private final CompletableFuture<Void> mFuture;
+
+        private Node(String name, CompletableFuture<Void> future) {
+            mName = name;
+            mFuture = future;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public boolean isDone() {
+            return mFuture.isDone();
+        }
+    }
+
+    private final String mName;
+    private final Executor mExecutor;
+    private final CompletableFuture<Void> mStart = new CompletableFuture<>();
+    private final List<Node> mNodes = new ArrayList<>();
+    private boolean mStarted;
+    private long mStartTime;
+
+    public TaskGraph(String name, Executor executor) {
+        mName = name;
+        mExecutor = executor;
+    }
+
+    public synchronized Node addGate(String name) {
+        final Node gate = new Node(name, new CompletableFuture<>());
+        mNodes.add(gate);
+        return gate;
+    }
+
+    public Node addTask(String name, Runnable task, Node... dependencies) {
+        return addTask(name, mExecutor, task, dependencies);
+    }
+
+    /**
+     * Adds a task run on {@code executor} instead of the graph's, such as one that needs the
+     * main thread.
+     */
+    public synchronized Node addTask(String name, Executor executor, Runnable task,
+            Node... dependencies) {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[dependencies.length + 1];
+        futures[0] = mStart;
+        for (int i = 0; i < dependencies.length; i++) {
+            futures[i + 1] = dependencies[i].mFuture;
+        }
+        final Node node = new Node(name, CompletableFuture.allOf(futures)
+                .thenRunAsync(() -> run(name, task), executor));
+        mNodes.add(node);
+        return node;
+    }
+
+    /**
+     * Starts every task whose dependencies are done. Later calls have no effect.
+     */
+    public void start() {
+        synchronized (this) {
+            if (mStarted) {
+                return;
+            }
+            mStarted = true;
+            mStartTime = SystemClock.elapsedRealtime();
+        }
+        Trace.beginAsyncSection(mName, 0);
+        whenDone().thenRun(() -> {
+            Trace.endAsyncSection(mName, 0);
+            if (LOGV) {
+                Log.v(TAG, mName + " done in "
+                        + (SystemClock.elapsedRealtime() - mStartTime) + "ms");
+            }
+        });
+        mStart.complete(null);
+    }
+
+    public void open(Node gate) {
+        if (LOGV && !gate.isDone()) {
+            Log.v(TAG, mName + " opening " + gate.mName);
+        }
+        gate.mFuture.complete(null);
+    }
+
+    /**
+     * @return A future completed once {@code nodes} are done, or every node if none is given.
+     */
+    public CompletableFuture<Void> whenDone(Node... nodes) {
+        final List<Node> waitFor;
+        synchronized (this) {
+            waitFor = nodes.length > 0 ? List.of(nodes) : new ArrayList<>(mNodes);
+        }
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[waitFor.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = waitFor.get(i).mFuture;
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    public synchronized boolean isDone() {
+        for (Node node : mNodes) {
+            if (!node.isDone()) {
+                return false;
+            }
+        }
+        return mStart.isDone();
+    }
+
+    private void run(String name, Runnable task) {
+        Trace.beginSection(mName + ":" + name);
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, mName + ": " + name + " failed", e);
+        } finally {
+            Trace.endSection();
+        }
+        if (LOGV) {
+            Log.v(TAG, mName + ": " + name + " took "
+                    + (SystemClock.elapsedRealtime() - start) + "ms on "
+                    + Thread.currentThread().getName());
+        }
+    }
+}
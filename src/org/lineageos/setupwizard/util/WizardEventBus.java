@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carries wizard events between parts of the app, in process and without binder calls.
+ *
+ * <p>System broadcasts behind these events are received once, at app level, and posted here.
+ * Subscriptions owned by an activity are lifecycle aware: events are delivered while the owner
+ * is started, those that come while it is stopped are delivered once when it starts again, and
+ * the subscriptions go away when it is destroyed. Events are delivered on the main thread.
+ */
+public class WizardEventBus implements Application.ActivityLifecycleCallbacks {
+
+    public static final String TAG = WizardEventBus.class.getSimpleName();
+
+    public enum Event {
+        SETUP_COMPLETE,
+        LOCALE_APPLIED,
+        NETWORK_CHANGED,
+        SIM_CHANGED,
+    }
+
+    public interface Listener {
+        void onEvent(Event event);
+    }
+
+    private static class Subscription {
+        final Event mEvent;
+        final Listener mListener;
+
+        Subscription(Event event, Listener listener) {
+            mEvent = event;
+            mListener = listener;
+        }
+    }
+
+    private static class Owner {
+        final List<Subscription> mSubscriptions = new ArrayList<>();
+        final EnumSet<Event> mPending = EnumSet.noneOf(Event.class);
+    }
+
+    private static WizardEventBus sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<Subscription> mAppSubscriptions = new ArrayList<>();
+    private final Map<Activity, Owner> mOwners = new HashMap<>();
+    private final Set<Activity> mStarted = new HashSet<>();
+
+    public static synchronized WizardEventBus getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WizardEventBus((Application) context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WizardEventBus(Application application) {
+        application.registerActivityLifecycleCallbacks(this);
+    }
+
+    /**
+     * Subscribes {@code listener} for as long as the app runs. Must be called on the main
+     * thread.
+     */
+    public void subscribe(Event event, Listener listener) {
+        mAppSubscriptions.add(new Subscription(event, listener));
+    }
+
+    /**
+     * Subscribes {@code listener} for as long as {@code owner} lives. Must be called on the main
+     * thread.
+     */
+    public void subscribe(Activity owner, Event event, Listener listener) {
+        mOwners.computeIfAbsent(owner, o -> new Owner()).mSubscriptions.add(
+                new Subscription(event, listener));
+    }
+
+    /**
+     * Posts {@code event} to its subscribers. Can be called from any thread.
+     */
+    public void post(Event event) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mHandler.post(() -> post(event));
+            return;
+        }
+        if (LOGV) {
+            Log.v(TAG, "post " + event);
+        }
+        for (Subscription subscription : new ArrayList<>(mAppSubscriptions)) {
+            if (subscription.mEvent == event) {
+                subscription.mListener.onEvent(event);
+            }
+        }
+        for (Map.Entry<Activity, Owner> entry : new ArrayList<>(mOwners.entrySet())) {
+            if (mStarted.contains(entry.getKey())) {
+                deliver(entry.getValue(), event);
+            } else {
+                entry.getValue().mPending.add(event);
+            }
+        }
+    }
+
+    private static void deliver(Owner owner, Event event) {
+        for (Subscription subscription : new ArrayList<>(owner.mSubscriptions)) {
+            if (subscription.mEvent == event) {
+                subscription.mListener.onEvent(event);
+            }
+        }
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        mStarted.add(activity);
+        final Owner owner = mOwners.get(activity);
+        if (owner == null || owner.mPending.isEmpty()) {
+            return;
+        }
+        final EnumSet<Event> pending = EnumSet.copyOf(owner.mPending);
+        owner.mPending.clear();
+        for (Event event : pending) {
+            deliver(owner, event);
+        }
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        mStarted.remove(activity);
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        mStarted.remove(activity);
+        mOwners.remove(activity);
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
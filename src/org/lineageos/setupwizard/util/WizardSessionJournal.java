@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.Context.MODE_PRIVATE;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.Map;
+
+/**
+ * Durable record of the current wizard session: the script and action the user is at, and the
+ * choices made so far that are only applied at the end of setup.
+ *
+ * <p>Writes go through {@link SharedPreferences.Editor#apply()}, so they are persisted off the
+ * calling thread and atomically replace the previous journal.
+ */
+public class WizardSessionJournal {
+
+    private static final String TAG = WizardSessionJournal.class.getSimpleName();
+
+    private static final String PREFS_NAME = "WizardSession";
+
+    private static final String KEY_SCRIPT_URI = "script_uri";
+    private static final String KEY_ACTION_ID = "action_id";
+    private static final String SETTING_PREFIX = "setting.";
+
+    private WizardSessionJournal() {
+    }
+
+    private static SharedPreferences getJournal(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    public static void recordAction(Context context, String scriptUri, String actionId) {
+        if (LOGV) {
+            Log.v(TAG, "recordAction scriptUri=" + scriptUri + " actionId=" + actionId);
+        }
+        getJournal(context).edit()
+                .putString(KEY_SCRIPT_URI, scriptUri)
+                .putString(KEY_ACTION_ID, actionId)
+                .apply();
+    }
+
+    /**
+     * @return The journaled action of {@code scriptUri}, or null if the journal is for another
+     * script or empty.
+     */
+    public static String getActionId(Context context, String scriptUri) {
+        SharedPreferences journal = getJournal(context);
+        return scriptUri.equals(journal.getString(KEY_SCRIPT_URI, null))
+                ? journal.getString(KEY_ACTION_ID, null) : null;
+    }
+
+    public static void putSetting(Context context, String key, String value) {
+        getJournal(context).edit().putString(SETTING_PREFIX + key, value).apply();
+    }
+
+    public static void putSetting(Context context, String key, boolean value) {
+        getJournal(context).edit().putBoolean(SETTING_PREFIX + key, value).apply();
+    }
+
+    public static void putSetting(Context context, String key, int value) {
+        getJournal(context).edit().putInt(SETTING_PREFIX + key, value).apply();
+    }
+
+    /**
+     * Copies the journaled settings into {@code settings}, keeping their types.
+     */
+    public static void restoreSettings(Context context, Bundle settings) {
+        for (Map.Entry<String, ?> entry : getJournal(context).getAll().entrySet()) {
+            if (!entry.getKey().startsWith(SETTING_PREFIX)) {
+                continue;
+            }
+            String key = entry.getKey().substring(SETTING_PREFIX.length());
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                settings.putString(key, (String) value);
+            } else if (value instanceof Boolean) {
+                settings.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                settings.putInt(key, (Integer) value);
+            }
+        }
+        if (LOGV) {
+            Log.v(TAG, "restoreSettings " + settings);
+        }
+    }
+
+    public static void clear(Context context) {
+        getJournal(context).edit().clear().apply();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Table of which wizard actions can be shown: their {@link ActionPredicate} holds and their
+ * intent resolves to an activity.
+ *
+ * <p>All actions of a script are resolved in one background pass when the script is loaded, so
+ * that routing a step does not need to query the PackageManager or probe the device. The table
+ * is only invalidated when a package changes, when we toggle one of our own components, or,
+ * for predicates only, when a {@code DeviceCapabilities} fact is invalidated or a step that can
+ * set up the lock screen returns.
+ */
+public class ActionAvailability {
+
+    public static final String TAG = ActionAvailability.class.getSimpleName();
+
+    private static ActionAvailability sInstance;
+
+    private final Context mContext;
+
+    // Keyed by intent URI, as that is all that resolution depends on
+    private final HashMap<String, Boolean> mResolvable = new HashMap<>();
+    // Keyed by wizard:requires expression
+    private final HashMap<String, Boolean> mRequirementsMet = new HashMap<>();
+    private final List<WizardScript> mScripts = new ArrayList<>();
+    private int mGeneration = 0;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (LOGV) {
+                Log.v(TAG, intent.toString());
+            }
+            invalidate();
+        }
+    };
+
+    public static synchronized ActionAvailability getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ActionAvailability(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Invalidates the table if it exists. Called whenever we change a component's enabled
+     * state, as the resulting PACKAGE_CHANGED broadcast arrives asynchronously.
+     */
+    public static void onComponentStateChanged() {
+        final ActionAvailability instance;
+        synchronized (ActionAvailability.class) {
+            instance = sInstance;
+        }
+        if (instance != null) {
+            instance.invalidate();
+        }
+    }
+
+    /**
+     * Evaluates every predicate again if the table exists, keeping what resolution found. Called
+     * whenever a device capability is invalidated, and when a step may have changed device
+     * state that predicates read directly, such as whether the keyguard is secure.
+     */
+    public static void onCapabilitiesChanged() {
+        final ActionAvailability instance;
+        synchronized (ActionAvailability.class) {
+            instance = sInstance;
+        }
+        if (instance != null) {
+            instance.invalidate(false);
+        }
+    }
+
+    private ActionAvailability(Context context) {
+        mContext = context;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(mPackageReceiver, filter);
+    }
+
+    /**
+     * Resolves every action of {@code script} on a background thread.
+     */
+    public void prefetch(WizardScript script) {
+        synchronized (this) {
+            if (!mScripts.contains(script)) {
+                mScripts.add(script);
+            }
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> resolve(script));
+    }
+
+    public boolean isAvailable(WizardAction action) {
+        final ActionPredicate requires = action.getRequires();
+        if (requires != null && !getCached(mRequirementsMet, requires.getExpression(),
+                () -> requires.evaluate(mContext))) {
+            return false;
+        }
+        return getCached(mResolvable, action.getUri(), () -> query(action));
+    }
+
+    private boolean getCached(HashMap<String, Boolean> cache, String key,
+            Supplier<Boolean> compute) {
+        final int generation;
+        synchronized (this) {
+            Boolean value = cache.get(key);
+            if (value != null) {
+                return value;
+            }
+            generation = mGeneration;
+        }
+        if (LOGV) {
+            Log.v(TAG, "isAvailable cache miss for " + key);
+        }
+        final boolean value = compute.get();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                cache.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public void invalidate() {
+        invalidate(true);
+    }
+
+    private void invalidate(boolean resolution) {
+        final List<WizardScript> scripts;
+        synchronized (this) {
+            mGeneration++;
+            if (resolution) {
+                mResolvable.clear();
+            }
+            mRequirementsMet.clear();
+            scripts = new ArrayList<>(mScripts);
+        }
+        for (WizardScript script : scripts) {
+            script.clearAvailability();
+        }
+        if (LOGV) {
+            Log.v(TAG, "invalidate, resolving " + scripts.size() + " scripts again");
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            for (WizardScript script : scripts) {
+                resolve(script);
+            }
+        });
+    }
+
+    private void resolve(WizardScript script) {
+        final int generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        final HashMap<String, Boolean> resolved = new HashMap<>();
+        final HashMap<String, Boolean> evaluated = new HashMap<>();
+        for (WizardAction action : script.getActions()) {
+            final String uri = action.getUri();
+            final ActionPredicate requires = action.getRequires();
+            final boolean resolve;
+            final boolean evaluate;
+            synchronized (this) {
+                resolve = !mResolvable.containsKey(uri);
+                evaluate = requires != null
+                        && !mRequirementsMet.containsKey(requires.getExpression());
+            }
+            if (resolve && !resolved.containsKey(uri)) {
+                resolved.put(uri, query(action));
+            }
+            if (evaluate && !evaluated.containsKey(requires.getExpression())) {
+                evaluated.put(requires.getExpression(), requires.evaluate(mContext));
+            }
+        }
+        synchronized (this) {
+            if (generation != mGeneration) {
+                return;
+            }
+            mResolvable.putAll(resolved);
+            mRequirementsMet.putAll(evaluated);
+            // Feed the script's skip-chain jump table
+            for (WizardAction action : script.getActions()) {
+                final ActionPredicate requires = action.getRequires();
+                script.setActionAvailable(action.getId(), (requires == null
+                        || mRequirementsMet.get(requires.getExpression()))
+                        && mResolvable.get(action.getUri()));
+            }
+        }
+        if (LOGV) {
+            Log.v(TAG, "resolved " + resolved + " evaluated " + evaluated);
+        }
+    }
+
+    private boolean query(WizardAction action) {
+        final Intent intent = action.getIntent();
+        return intent != null && mContext.getPackageManager().queryIntentActivities(intent,
+                PackageManager.MATCH_DEFAULT_ONLY).size() > 0;
+    }
+}
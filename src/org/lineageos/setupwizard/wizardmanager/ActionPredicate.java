@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import android.app.KeyguardManager;
+import android.content.Context;
+import android.os.Build;
+
+import org.lineageos.setupwizard.util.SetupWizardUtils;
+
+/**
+ * Device capabilities a wizard action requires, from its {@code wizard:requires} attribute.
+ *
+ * <p>The expression is a {@code ,}-separated list of clauses that must all hold. A clause is a
+ * {@code |}-separated list of atoms of which at least one must hold, and an atom may be negated
+ * with {@code !}. For example, {@code hasWifi|hasTelephony,!ethernetConnected}.
+ */
+public class ActionPredicate {
+
+    // Must match the host-side ActionPredicate in tools/
+    enum Atom {
+        HAS_TELEPHONY("hasTelephony") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.hasTelephony(context);
+            }
+        },
+        HAS_WIFI("hasWifi") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.hasWifi(context);
+            }
+        },
+        HAS_LEANBACK("hasLeanback") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.hasLeanback(context);
+            }
+        },
+        HAS_BIOMETRIC("hasBiometric") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.hasBiometric(context);
+            }
+        },
+        SIM_MISSING("simMissing") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.simMissing();
+            }
+        },
+        BOOTLOADER_UNLOCKED("bootloaderUnlocked") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.isBootloaderUnlocked(context);
+            }
+        },
+        DEBUGGABLE("debuggable") {
+            @Override
+            boolean evaluate(Context context) {
+                return Build.IS_DEBUGGABLE;
+            }
+        },
+        BLUETOOTH_DISABLED("bluetoothDisabled") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.isBluetoothDisabled(context);
+            }
+        },
+        ETHERNET_CONNECTED("ethernetConnected") {
+            @Override
+            boolean evaluate(Context context) {
+                return SetupWizardUtils.isEthernetConnected(context);
+            }
+        },
+        KEYGUARD_SECURE("keyguardSecure") {
+            @Override
+            boolean evaluate(Context context) {
+                return context.getSystemService(KeyguardManager.class).isKeyguardSecure();
+            }
+        };
+
+        final String mName;
+
+        Atom(String name) {
+            mName = name;
+        }
+
+        abstract boolean evaluate(Context context);
+
+        static Atom fromName(String name) {
+            for (Atom atom : values()) {
+                if (atom.mName.equals(name)) {
+                    return atom;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final String mExpression;
+    private final Atom[][] mClauses;
+    private final boolean[][] mNegated;
+
+    private ActionPredicate(String expression, Atom[][] clauses, boolean[][] negated) {
+        mExpression = expression;
+        mClauses = clauses;
+        mNegated = negated;
+    }
+
+    /**
+     * @return The predicate of {@code expression}, or null if {@code expression} is null.
+     * @throws IllegalArgumentException if {@code expression} is malformed or names an unknown
+     * atom.
+     */
+    public static ActionPredicate parse(String expression) {
+        if (expression == null) {
+            return null;
+        }
+        final String[] clauses = expression.split(",", -1);
+        final Atom[][] atoms = new Atom[clauses.length][];
+        final boolean[][] negated = new boolean[clauses.length][];
+        for (int i = 0; i < clauses.length; i++) {
+            final String[] terms = clauses[i].split("\\|", -1);
+            atoms[i] = new Atom[terms.length];
+            negated[i] = new boolean[terms.length];
+            for (int j = 0; j < terms.length; j++) {
+                String term = terms[j].trim();
+                if (term.startsWith("!")) {
+                    negated[i][j] = true;
+                    term = term.substring(1).trim();
+                }
+                atoms[i][j] = Atom.fromName(term);
+                if (atoms[i][j] == null) {
+                    throw new IllegalArgumentException("Unknown atom '" + term + "' in "
+                            + expression);
+                }
+            }
+        }
+        return new ActionPredicate(expression, atoms, negated);
+    }
+
+    public boolean evaluate(Context context) {
+        for (int i = 0; i < mClauses.length; i++) {
+            boolean holds = false;
+            for (int j = 0; j < mClauses[i].length && !holds; j++) {
+                holds = mClauses[i][j].evaluate(context) != mNegated[i][j];
+            }
+            if (!holds) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getExpression() {
+        return mExpression;
+    }
+
+    @Override
+    public String toString() {
+        return mExpression;
+    }
+}
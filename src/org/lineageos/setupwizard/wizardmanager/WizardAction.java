@@ -21,6 +21,7 @@ import static android.content.Intent.FLAG_GRANT_READ_URI_PERMISSION;
 
 import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
 
+import android.content.ComponentName;
 import android.content.Intent;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -33,6 +34,12 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class WizardAction implements Parcelable {
 
@@ -40,17 +47,69 @@ public class WizardAction implements Parcelable {
 
     private final String mId;
     private final String mUri;
+    private final ActionPredicate mRequires;
+    // Extras passed on to this action on top of WizardExtras.DEFAULT_EXTRAS
+    private final Set<String> mExtras;
+    // How long a subactivity may take to show before the action is skipped, or 0
+    private final int mTimeoutMillis;
+    // Intent actions of the steps shown as sections of this one, if it is a composite
+    private final List<String> mSections;
     private final WizardTransitions mTransitions;
 
+    // Parsed from mUri on first use, copied for every caller
+    private volatile Intent mIntentTemplate;
+
     public WizardAction(String id, String uri, WizardTransitions transitions) {
+        this(id, uri, null, null, 0, null, transitions);
+    }
+
+    /**
+     * @param requires The {@link ActionPredicate} expression the device must satisfy for the
+     * action to be shown, or null.
+     * @param extras Comma separated keys of the extras passed on to the action besides
+     * {@link WizardExtras#DEFAULT_EXTRAS}, or null.
+     * @param timeoutMillis How long a subactivity of the action may take to show before the
+     * action is skipped, or 0 to wait for as long as it takes.
+     * @param sections Comma separated intent actions of the steps shown as sections of this
+     * one, or null if it is not a composite.
+     * @throws IllegalArgumentException if {@code requires} is malformed or
+     * {@code timeoutMillis} is negative.
+     */
+    WizardAction(String id, String uri, String requires, String extras, int timeoutMillis,
+            String sections, WizardTransitions transitions) {
         if (transitions == null) {
             throw new IllegalArgumentException("WizardTransitions cannot be null");
         }
         mId = id;
         mUri = uri;
+        mRequires = ActionPredicate.parse(requires);
+        mExtras = parseExtras(extras);
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Negative timeout " + timeoutMillis);
+        }
+        mTimeoutMillis = timeoutMillis;
+        mSections = List.copyOf(parseList(sections));
         mTransitions = transitions;
     }
 
+    private static Set<String> parseExtras(String extras) {
+        return Collections.unmodifiableSet(parseList(extras));
+    }
+
+    private static Set<String> parseList(String list) {
+        final Set<String> items = new LinkedHashSet<>();
+        if (list == null) {
+            return items;
+        }
+        for (String item : list.split(",")) {
+            item = item.trim();
+            if (!item.isEmpty()) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
     public String getId() {
         return mId;
     }
@@ -59,25 +118,100 @@ public class WizardAction implements Parcelable {
         return mUri;
     }
 
+    /**
+     * @return The capabilities the device must have for this action to be shown, or null if
+     * the action has no requirements.
+     */
+    public ActionPredicate getRequires() {
+        return mRequires;
+    }
+
+    public String getRequiresExpression() {
+        return mRequires != null ? mRequires.getExpression() : null;
+    }
+
+    /**
+     * @return The keys of the extras passed on to this action besides
+     * {@link WizardExtras#DEFAULT_EXTRAS}.
+     */
+    public Set<String> getExtras() {
+        return mExtras;
+    }
+
+    public String getExtrasExpression() {
+        return mExtras.isEmpty() ? null : String.join(",", mExtras);
+    }
+
+    /**
+     * @return How long a subactivity of this action may take to show before the action is
+     * skipped, or 0 if there is no limit.
+     */
+    public int getTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    /**
+     * @return The intent actions of the steps shown as sections of this one, in order, or an
+     * empty list if it is not a composite.
+     */
+    public List<String> getSections() {
+        return mSections;
+    }
+
+    public String getSectionsExpression() {
+        return mSections.isEmpty() ? null : String.join(",", mSections);
+    }
+
     public Intent getIntent() {
-        Intent intent = null;
-        try {
-            intent = Intent.parseUri(mUri, FLAG_GRANT_READ_URI_PERMISSION);
-        } catch (URISyntaxException e) {
-            Log.e(TAG, "Bad URI: " + mUri);
+        Intent template = mIntentTemplate;
+        if (template == null) {
+            try {
+                template = Intent.parseUri(mUri, FLAG_GRANT_READ_URI_PERMISSION);
+            } catch (URISyntaxException e) {
+                Log.e(TAG, "Bad URI: " + mUri);
+                return null;
+            }
+            // Our own steps are started explicitly, skipping intent resolution
+            String className = WizardComponentRegistry.getClassName(template.getAction());
+            if (className != null && template.getComponent() == null
+                    && template.getPackage() == null) {
+                template.setComponent(new ComponentName(WizardComponentRegistry.PACKAGE_NAME,
+                        className));
+            }
+            mIntentTemplate = template;
         }
-        return intent;
+        return new Intent(template);
     }
 
     public String getNextAction(int resultCode) {
         return mTransitions.getAction(resultCode);
     }
 
+    /**
+     * @return The index in the owning script of the next action, or
+     * {@link WizardTransitions#NO_ACTION}.
+     */
+    public int getNextActionIndex(int resultCode) {
+        return mTransitions.getActionIndex(resultCode);
+    }
+
+    void link(Map<String, Integer> actionIndices) {
+        mTransitions.link(actionIndices);
+    }
+
+    boolean isLinked() {
+        return mTransitions.isLinked();
+    }
+
     @Override
     public String toString() {
         return "WizardAction{" +
                 "mId='" + mId + '\'' +
                 ", mUri='" + mUri + '\'' +
+                ", mRequires=" + mRequires +
+                ", mExtras=" + mExtras +
+                ", mTimeoutMillis=" + mTimeoutMillis +
+                ", mSections=" + mSections +
                 ", mTransitions=" + mTransitions +
                 '}';
     }
@@ -91,6 +225,10 @@ public class WizardAction implements Parcelable {
 
         if (mId != null ? !mId.equals(that.mId) : that.mId != null) return false;
         if (mUri != null ? !mUri.equals(that.mUri) : that.mUri != null) return false;
+        if (!Objects.equals(getRequiresExpression(), that.getRequiresExpression())) return false;
+        if (!mExtras.equals(that.mExtras)) return false;
+        if (mTimeoutMillis != that.mTimeoutMillis) return false;
+        if (!mSections.equals(that.mSections)) return false;
         return mTransitions != null ?
                 mTransitions.equals(that.mTransitions) :
                 that.mTransitions == null;
@@ -101,6 +239,10 @@ public class WizardAction implements Parcelable {
     public int hashCode() {
         int result = mId != null ? mId.hashCode() : 0;
         result = 31 * result + (mUri != null ? mUri.hashCode() : 0);
+        result = 31 * result + Objects.hashCode(getRequiresExpression());
+        result = 31 * result + mExtras.hashCode();
+        result = 31 * result + mTimeoutMillis;
+        result = 31 * result + mSections.hashCode();
         result = 31 * result + (mTransitions != null ? mTransitions.hashCode() : 0);
         return result;
     }
@@ -110,16 +252,24 @@ public class WizardAction implements Parcelable {
     }
 
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(mUri);
         dest.writeString(mId);
-        dest.writeParcelable(mTransitions, flags);
+        dest.writeString(mUri);
+        dest.writeString(getRequiresExpression());
+        dest.writeString(getExtrasExpression());
+        dest.writeInt(mTimeoutMillis);
+        dest.writeString(getSectionsExpression());
+        mTransitions.writeToParcel(dest, flags);
     }
 
     public static final Creator<WizardAction> CREATOR = new Creator<WizardAction>() {
         public WizardAction createFromParcel(Parcel source) {
             return new WizardAction(source.readString(),
                     source.readString(),
-                    source.readParcelable(WizardTransitions.class.getClassLoader()));
+                    source.readString(),
+                    source.readString(),
+                    source.readInt(),
+                    source.readString(),
+                    WizardTransitions.CREATOR.createFromParcel(source));
         }
 
         public WizardAction[] newArray(int size) {
@@ -151,6 +301,14 @@ public class WizardAction implements Parcelable {
         String id = parser.getAttributeValue(null, WizardScript.ATTR_ID);
         String uri = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
                 WizardScript.ATTR_URI);
+        String requires = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
+                WizardScript.ATTR_REQUIRES);
+        String extras = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
+                WizardScript.ATTR_EXTRAS);
+        String timeout = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
+                WizardScript.ATTR_TIMEOUT);
+        String sections = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
+                WizardScript.ATTR_SECTIONS);
         WizardTransitions transitions = new WizardTransitions();
         if (id == null) {
             throw new XmlPullParserException("WizardAction must define an id");
@@ -163,6 +321,10 @@ public class WizardAction implements Parcelable {
             Log.v(TAG, "parseWizardAction{" +
                     "id='" + id + '\'' +
                     ", uri=" + uri +
+                    ", requires=" + requires +
+                    ", extras=" + extras +
+                    ", timeout=" + timeout +
+                    ", sections=" + sections +
                     '}');
         }
         int type;
@@ -178,6 +340,11 @@ public class WizardAction implements Parcelable {
             }
         }
 
-        return new WizardAction(id, uri, transitions);
+        try {
+            return new WizardAction(id, uri, requires, extras,
+                    timeout != null ? Integer.parseInt(timeout) : 0, sections, transitions);
+        } catch (IllegalArgumentException e) {
+            throw new XmlPullParserException("WizardAction " + id + ": " + e.getMessage());
+        }
     }
 }
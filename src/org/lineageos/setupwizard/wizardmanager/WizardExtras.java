@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_HAS_MULTIPLE_USERS;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.Log;
+
+import com.google.android.setupcompat.util.WizardManagerHelper;
+
+import java.util.Set;
+
+/**
+ * Decides which extras are passed on from one step to the next.
+ *
+ * <p>Only {@link #DEFAULT_EXTRAS} and the keys an action declares in {@code wizard:extras} are
+ * passed on to it. Anything else a step or its subactivity returns is dropped, rather than
+ * carried along, and unparcelled again, by every step after it.
+ */
+public class WizardExtras {
+
+    public static final String TAG = WizardExtras.class.getSimpleName();
+
+    // WizardManagerHelper keeps the key of its wizard bundle to itself
+    private static final String EXTRA_WIZARD_BUNDLE = "wizardBundle";
+
+    public static final Set<String> DEFAULT_EXTRAS = Set.of(
+            WizardManagerHelper.EXTRA_IS_FIRST_RUN,
+            WizardManagerHelper.EXTRA_IS_SETUP_FLOW,
+            WizardManagerHelper.EXTRA_IS_DEFERRED_SETUP,
+            WizardManagerHelper.EXTRA_IS_PRE_DEFERRED_SETUP,
+            WizardManagerHelper.EXTRA_IS_PORTAL_SETUP,
+            WizardManagerHelper.EXTRA_THEME,
+            WizardManagerHelper.EXTRA_USE_IMMERSIVE_MODE,
+            EXTRA_WIZARD_BUNDLE,
+            EXTRA_HAS_MULTIPLE_USERS,
+            EXTRA_SCRIPT_URI,
+            EXTRA_ACTION_ID);
+
+    private WizardExtras() {
+    }
+
+    /**
+     * @param action The action the extras are for, or null if only the defaults may pass.
+     * @return The extras of {@code extras} that may be passed on to {@code action}, or null if
+     * there are none.
+     */
+    public static Bundle filter(Bundle extras, WizardAction action) {
+        if (extras == null || extras.isEmpty()) {
+            return null;
+        }
+        final Set<String> allowed = action != null ? action.getExtras() : Set.of();
+        final Bundle filtered = new Bundle(extras);
+        for (String key : extras.keySet()) {
+            if (!DEFAULT_EXTRAS.contains(key) && !allowed.contains(key)) {
+                filtered.remove(key);
+            }
+        }
+        if (LOGV) {
+            final String dropped = extras.size() == filtered.size() ? ""
+                    : ", dropped " + (extras.size() - filtered.size()) + " extras ("
+                            + getParcelSize(extras) + " bytes before)";
+            Log.v(TAG, "hop to " + (action != null ? action.getId() : "WizardManager")
+                    + ": " + filtered.size() + " extras, " + getParcelSize(filtered)
+                    + " bytes" + dropped);
+        }
+        return filtered.isEmpty() ? null : filtered;
+    }
+
+    /**
+     * @return The size of {@code extras} once parcelled, for logging.
+     */
+    public static int getParcelSize(Bundle extras) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(extras);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
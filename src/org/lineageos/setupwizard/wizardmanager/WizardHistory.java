@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The steps behind the current one, as kept by {@link WizardRouter}.
+ *
+ * <p>Only the last {@link #MAX_LIVE_STEPS} steps keep their activity. Older ones are finished
+ * once their state has been saved, and only their intent and saved state are kept. Back to
+ * such a step relaunches it with {@link #EXTRA_SNAPSHOT_ID}, under which its saved state can be
+ * taken to restore from. Steps are identified by an id of their own, kept in their saved
+ * state, as activities are recreated on configuration changes.
+ *
+ * <p>Must only be used on the main thread.
+ */
+public class WizardHistory {
+
+    public static final String TAG = WizardHistory.class.getSimpleName();
+
+    public static final String EXTRA_SNAPSHOT_ID = "historySnapshotId";
+
+    // Steps behind the current one that keep their activity, for a quick Back
+    static final int MAX_LIVE_STEPS = 2;
+
+    private static class Entry {
+        final long mId;
+        Intent mIntent;
+        Bundle mState;
+        WeakReference<Activity> mActivity;
+
+        Entry(long id, Activity activity) {
+            mId = id;
+            mActivity = new WeakReference<>(activity);
+        }
+
+        boolean isEvicted() {
+            return mActivity == null;
+        }
+
+        String getActionId() {
+            return mIntent != null ? mIntent.getStringExtra(EXTRA_ACTION_ID) : null;
+        }
+    }
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    // Saved state of the steps alive, as last saved by the framework
+    private final Map<Long, Bundle> mStates = new HashMap<>();
+    // Saved state of the steps being relaunched
+    private final Map<Long, Bundle> mSnapshots = new HashMap<>();
+    private long mNextId = 1;
+
+    WizardHistory() {
+    }
+
+    public long newId() {
+        return mNextId++;
+    }
+
+    /**
+     * Rebinds step {@code id} to {@code activity}, recreated from its saved state.
+     */
+    public void onCreated(long id, Activity activity) {
+        final Entry entry = find(id);
+        if (entry != null && !entry.isEvicted()) {
+            entry.mActivity = new WeakReference<>(activity);
+        }
+    }
+
+    /**
+     * Keeps {@code state} as the latest saved state of step {@code id}. Kept as is rather than
+     * copied, as subclasses may add to it after the base class has handed it over.
+     */
+    public void onStateSaved(long id, Bundle state) {
+        mStates.put(id, state);
+    }
+
+    /**
+     * Records that step {@code id} has been left for the next one, and finishes the activities
+     * of the steps now too far back.
+     */
+    public void push(long id, Activity activity) {
+        remove(id);
+        mEntries.add(new Entry(id, activity));
+        int live = 0;
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            final Entry entry = mEntries.get(i);
+            if (entry.isEvicted() || ++live <= MAX_LIVE_STEPS) {
+                continue;
+            }
+            evict(entry);
+        }
+    }
+
+    /**
+     * Records that step {@code id} is current again, as the steps after it were left through
+     * Back.
+     */
+    public void onReturned(long id) {
+        if (find(id) == null) {
+            return;
+        }
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            final Entry entry = mEntries.remove(i);
+            if (entry.mId == id) {
+                break;
+            }
+            mStates.remove(entry.mId);
+        }
+    }
+
+    /**
+     * Forgets step {@code id}, as it finished on its own rather than being evicted.
+     */
+    public void onFinished(long id) {
+        final Entry entry = find(id);
+        if (entry == null || !entry.isEvicted()) {
+            remove(id);
+            mStates.remove(id);
+        }
+    }
+
+    /**
+     * Takes the previous step out of the history if its activity has been finished.
+     *
+     * @return The intent to relaunch it with, or null if its activity is still there to go
+     * back to, or there is none.
+     */
+    public Intent popEvicted() {
+        if (mEntries.isEmpty() || !mEntries.get(mEntries.size() - 1).isEvicted()) {
+            return null;
+        }
+        final Entry entry = mEntries.remove(mEntries.size() - 1);
+        mSnapshots.put(entry.mId, entry.mState);
+        if (LOGV) {
+            Log.v(TAG, "relaunching " + entry.getActionId() + " history=" + mEntries.size());
+        }
+        return new Intent(entry.mIntent).putExtra(EXTRA_SNAPSHOT_ID, entry.mId);
+    }
+
+    /**
+     * @return The saved state to restore the step relaunched with {@code intent} from, or null
+     * if it was not relaunched from the history.
+     */
+    public Bundle takeSnapshot(Intent intent) {
+        return mSnapshots.remove(intent.getLongExtra(EXTRA_SNAPSHOT_ID, 0));
+    }
+
+    public void clear() {
+        mEntries.clear();
+        mStates.clear();
+        mSnapshots.clear();
+    }
+
+    private void evict(Entry entry) {
+        final Activity activity = entry.mActivity.get();
+        final Bundle state = mStates.get(entry.mId);
+        if (activity == null || activity.isFinishing() || state == null) {
+            // Not saved yet, or gone already; leave it be
+            return;
+        }
+        entry.mIntent = activity.getIntent();
+        entry.mState = new Bundle(state);
+        entry.mActivity = null;
+        mStates.remove(entry.mId);
+        if (LOGV) {
+            Log.v(TAG, "evicting " + entry.getActionId() + " history=" + mEntries.size());
+        }
+        activity.finish();
+    }
+
+    private Entry find(long id) {
+        for (Entry entry : mEntries) {
+            if (entry.mId == id) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void remove(long id) {
+        mEntries.removeIf(entry -> entry.mId == id);
+    }
+}
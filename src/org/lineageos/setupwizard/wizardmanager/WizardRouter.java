@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.google.android.setupcompat.util.WizardManagerHelper;
+
+import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.StepLatency;
+import org.lineageos.setupwizard.util.WizardSessionJournal;
+
+import java.util.List;
+
+/**
+ * Resolves wizard script transitions in-process.
+ *
+ * <p>Steps call {@link #getNextIntent} and start the result themselves, instead of bouncing
+ * through the {@link WizardManager} activity. WizardManager uses the same router for the
+ * external {@code com.android.wizard.LOAD} and {@code com.android.wizard.NEXT} entry points.
+ */
+public class WizardRouter {
+
+    public static final String TAG = WizardRouter.class.getSimpleName();
+
+    private static final String TRACE_TRANSITION = "WizardTransition";
+
+    private static WizardRouter sInstance;
+
+    // Start of the transition in flight, for StepLatency
+    private static long sTransitionStart;
+    private static String sTransitionPath;
+
+    private final Context mContext;
+    private final WizardHistory mHistory = new WizardHistory();
+
+    public static synchronized WizardRouter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WizardRouter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WizardRouter(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @param actionId The action to resume at, or null to start at the first action.
+     * @return The intent of the first available action of the script, or null if there is none,
+     * in which case the wizard has exited.
+     */
+    public Intent getFirstIntent(String scriptUri, String actionId, Intent extras) {
+        Trace.beginSection("WizardRouter.getFirstIntent");
+        try {
+            WizardScript wizardScript = getWizardScript(scriptUri);
+            if (wizardScript == null) {
+                Log.e(TAG, "load could not load scriptUri=" + scriptUri);
+                exit(scriptUri);
+                return null;
+            }
+            WizardAction wizardAction = wizardScript.getFirstAvailableActionFrom(actionId,
+                    this::isAvailable);
+            if (wizardAction == null) {
+                Log.e(TAG, "load could not resolve first action scriptUri=" +
+                        scriptUri + " actionId=" + wizardScript.getFirstActionId());
+                exit(scriptUri);
+                return null;
+            }
+            return getActionIntent(scriptUri, wizardAction, extras);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * @return The intent of the action that follows {@code actionId} given {@code resultCode},
+     * or null if there is none, in which case the wizard has exited.
+     */
+    public Intent getNextIntent(String scriptUri, String actionId, int resultCode,
+            Intent extras) {
+        Trace.beginSection("WizardRouter.getNextIntent");
+        try {
+            if (LOGV) {
+                Log.v(TAG, "getNextIntent scriptUri=" + scriptUri + " actionId="
+                        + actionId + " resultCode=" + resultCode);
+            }
+            WizardScript wizardScript = getWizardScript(scriptUri);
+            if (wizardScript == null) {
+                Log.e(TAG, "next could not load scriptUri=" + scriptUri);
+                exit(scriptUri);
+                return null;
+            }
+            WizardAction wizardAction = wizardScript.getNextAvailableAction(actionId,
+                    resultCode, this::isAvailable);
+            if (LOGV) {
+                Log.v(TAG, "getNextIntent action=" + wizardAction);
+            }
+            if (wizardAction == null) {
+                exit(scriptUri);
+                return null;
+            }
+            return getActionIntent(scriptUri, wizardAction, extras);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * @return The intent of the action most likely to follow {@code actionId}, i.e. the one it
+     * transitions to when done, or null if there is none. Has no side effects, unlike
+     * {@link #getNextIntent}.
+     */
+    public Intent predictNextIntent(String scriptUri, String actionId) {
+        final WizardScript wizardScript = getWizardScript(scriptUri);
+        if (wizardScript == null) {
+            return null;
+        }
+        final WizardAction wizardAction = wizardScript.getNextAvailableAction(actionId,
+                Activity.RESULT_OK, this::isAvailable);
+        return wizardAction != null ? wizardAction.getIntent() : null;
+    }
+
+    /**
+     * @return How long a subactivity of {@code actionId} may take to show before the action is
+     * skipped, or 0 if there is no limit.
+     */
+    public int getTimeoutMillis(String scriptUri, String actionId) {
+        final WizardScript wizardScript = getWizardScript(scriptUri);
+        final WizardAction wizardAction = wizardScript != null
+                ? wizardScript.getAction(actionId) : null;
+        return wizardAction != null ? wizardAction.getTimeoutMillis() : 0;
+    }
+
+    /**
+     * @return The intent actions of the steps shown as sections of {@code actionId}, or an
+     * empty list if it is not a composite.
+     */
+    public List<String> getSections(String scriptUri, String actionId) {
+        final WizardScript wizardScript = getWizardScript(scriptUri);
+        final WizardAction wizardAction = wizardScript != null
+                ? wizardScript.getAction(actionId) : null;
+        return wizardAction != null ? wizardAction.getSections() : List.of();
+    }
+
+    public WizardHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * Marks the start of a step transition; {@code path} names the route taken. The transition
+     * is traced as an async {@code WizardTransition:<path>} section, see
+     * {@code tools/perfetto/wizard_transitions.pbtx}.
+     */
+    public static void beginTransition(String path) {
+        final String previous;
+        synchronized (WizardRouter.class) {
+            previous = sTransitionStart != 0 ? sTransitionPath : null;
+            sTransitionStart = SystemClock.elapsedRealtime();
+            sTransitionPath = path;
+        }
+        if (previous != null) {
+            // Superseded before the next step showed up
+            Trace.endAsyncSection(TRACE_TRANSITION + ":" + previous, 0);
+        }
+        Trace.beginAsyncSection(TRACE_TRANSITION + ":" + path, 0);
+    }
+
+    /**
+     * Marks the end of the step transition in flight, if any, once {@code step} is resumed.
+     * Its latency is recorded in {@link StepLatency} for {@code step} and the route taken.
+     */
+    public static void endTransition(Context context, String step) {
+        final long start;
+        final String path;
+        synchronized (WizardRouter.class) {
+            start = sTransitionStart;
+            path = sTransitionPath;
+            sTransitionStart = 0;
+        }
+        if (start == 0) {
+            return;
+        }
+        Trace.endAsyncSection(TRACE_TRANSITION + ":" + path, 0);
+        StepLatency.getInstance(context).record(step + "@" + path,
+                StepLatency.Phase.TRANSITION, SystemClock.elapsedRealtime() - start);
+    }
+
+    private Intent getActionIntent(String scriptUri, WizardAction action, Intent extras) {
+        Intent intent = action.getIntent();
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        if (LOGV) {
+            Log.v(TAG, "getActionIntent scriptUri=" + scriptUri + " extras=" + extras
+                    + " intent=" + intent + " extras2=" + intent.getExtras() + " action=" + action);
+        }
+
+        intent.putExtra(WizardManagerHelper.EXTRA_IS_FIRST_RUN, true);
+        if (extras != null) {
+            // Only what the action declares, rather than all that piled up along the way
+            final Bundle allowed = WizardExtras.filter(extras.getExtras(), action);
+            if (allowed != null) {
+                intent.putExtras(allowed);
+            }
+        }
+
+        intent.putExtra(EXTRA_SCRIPT_URI, scriptUri);
+        intent.putExtra(EXTRA_ACTION_ID, action.getId());
+        WizardSessionJournal.recordAction(mContext, scriptUri, action.getId());
+        return intent;
+    }
+
+    private void exit(String scriptUri) {
+        if (LOGV) {
+            Log.v(TAG, "exit scriptUri=" + scriptUri);
+        }
+        WizardScriptRegistry.getInstance(mContext).remove(scriptUri);
+        WizardScriptCache.clear(mContext);
+        mHistory.clear();
+        WizardSessionJournal.clear(mContext);
+        SetupWizardUtils.disableComponent(mContext, WizardManager.class);
+    }
+
+    private boolean isAvailable(WizardAction action) {
+        return ActionAvailability.getInstance(mContext).isAvailable(action);
+    }
+
+    private WizardScript getWizardScript(String scriptUri) {
+        return WizardScriptRegistry.getInstance(mContext).get(scriptUri);
+    }
+}
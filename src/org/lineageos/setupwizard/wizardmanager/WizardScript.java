@@ -22,24 +22,33 @@ import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
 import android.app.Activity;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.Resources;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.util.Log;
 import android.util.Xml;
 
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.XmlUtils;
+import com.google.android.setupcompat.util.ResultCodes;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
 
 public class WizardScript implements Parcelable {
 
@@ -56,17 +65,85 @@ public class WizardScript implements Parcelable {
     public static final String ATTR_ACTION = "action";
     public static final String ATTR_FIRST_ACTION = "firstAction";
     public static final String ATTR_RESULT_CODE = "resultCode";
+    public static final String ATTR_REQUIRES = "requires";
+    public static final String ATTR_EXTRAS = "extras";
+    public static final String ATTR_TIMEOUT = "timeout";
+    public static final String ATTR_SECTIONS = "sections";
 
-    private final Map<String, WizardAction> mActions;
+    // Must match WizardScriptCompiler
+    private static final int COMPILED_MAGIC = 0x53575343; // "SWSC"
+    private static final int COMPILED_VERSION = 5;
+    private static final String COMPILED_SUFFIX = "_compiled";
+
+    // Values of mAvailability
+    private static final byte AVAILABILITY_UNKNOWN = 0;
+    private static final byte AVAILABILITY_AVAILABLE = 1;
+    private static final byte AVAILABILITY_UNAVAILABLE = 2;
+
+    // Values of mFirstAvailable besides an action index
+    private static final int NO_ACTION = WizardTransitions.NO_ACTION;
+    private static final int UNRESOLVED = -2;
+
+    // Actions in declaration order; everything else refers to them by index
+    private final WizardAction[] mActions;
+    private final HashMap<String, Integer> mActionIndices;
     private final String mFirstActionId;
+    private final int mFirstActionIndex;
+
+    // Skip-chain jump table, built on first use. mSkip holds the RESULT_ACTIVITY_NOT_FOUND
+    // successor of each action, and mFirstAvailable the first available action on the skip
+    // chain starting at each action.
+    private final Object mJumpLock = new Object();
+    private int[] mSkip;
+    private int[][] mSkippedBy;
+    private byte[] mAvailability;
+    private int[] mFirstAvailable;
 
     public WizardScript(Map<String, WizardAction> actions, String firstActionId) {
-        mActions = Collections.unmodifiableMap(actions);
+        this(actions.values().toArray(new WizardAction[actions.size()]), firstActionId);
+    }
+
+    public WizardScript(WizardAction[] actions, String firstActionId) {
+        this(actions, firstActionId, false);
+    }
+
+    /**
+     * @param linked Whether the actions were already linked against this order, as they are
+     *               when unparcelled.
+     */
+    private WizardScript(WizardAction[] actions, String firstActionId, boolean linked) {
+        mActions = actions;
+        mActionIndices = new HashMap<>(actions.length * 2);
+        for (int i = 0; i < actions.length; i++) {
+            mActionIndices.put(actions[i].getId(), i);
+        }
+        for (WizardAction action : actions) {
+            if (!linked || !action.isLinked()) {
+                action.link(mActionIndices);
+            }
+        }
         mFirstActionId = firstActionId;
+        mFirstActionIndex = getActionIndex(firstActionId);
     }
 
     public WizardAction getAction(String actionId) {
-        return mActions.get(actionId);
+        return getActionAt(getActionIndex(actionId));
+    }
+
+    /**
+     * @return The index of {@code actionId}, or {@link WizardTransitions#NO_ACTION}.
+     */
+    public int getActionIndex(String actionId) {
+        Integer index = actionId == null ? null : mActionIndices.get(actionId);
+        return index == null ? NO_ACTION : index;
+    }
+
+    public WizardAction getActionAt(int index) {
+        return index >= 0 ? mActions[index] : null;
+    }
+
+    public List<WizardAction> getActions() {
+        return Collections.unmodifiableList(Arrays.asList(mActions));
     }
 
     public WizardAction getFirstAction() {
@@ -89,7 +166,7 @@ public class WizardScript implements Parcelable {
     public String getNextActionId(String currentActionId, int resultCode) {
         String nextActionId = null;
         if (resultCode != Activity.RESULT_CANCELED) {
-            WizardAction wizardAction = mActions.get(currentActionId);
+            WizardAction wizardAction = getAction(currentActionId);
             if (LOGV) {
                 StringBuilder currentAction =
                         new StringBuilder().append("getNextActionId(").append(currentActionId)
@@ -107,25 +184,210 @@ public class WizardScript implements Parcelable {
         return nextActionId;
     }
 
+    /**
+     * @return The index of the action that follows the action at {@code currentIndex}, or
+     * {@link WizardTransitions#NO_ACTION}.
+     */
+    public int getNextActionIndex(int currentIndex, int resultCode) {
+        if (resultCode == Activity.RESULT_CANCELED || currentIndex < 0) {
+            return NO_ACTION;
+        }
+        return mActions[currentIndex].getNextActionIndex(resultCode);
+    }
+
+    public WizardAction getFirstAvailableAction(Predicate<WizardAction> isAvailable) {
+        return getActionAt(getFirstAvailableIndex(mFirstActionIndex, isAvailable));
+    }
+
+    /**
+     * @return The first available action on the skip chain starting at {@code actionId}, or
+     * at the first action if {@code actionId} is not part of this script.
+     */
+    public WizardAction getFirstAvailableActionFrom(String actionId,
+            Predicate<WizardAction> isAvailable) {
+        int index = getActionIndex(actionId);
+        return getActionAt(getFirstAvailableIndex(index != NO_ACTION ? index : mFirstActionIndex,
+                isAvailable));
+    }
+
+    /**
+     * Like {@link #getNextAction}, but follows the RESULT_ACTIVITY_NOT_FOUND chain to the first
+     * action that is available. {@code isAvailable} is only called for actions whose
+     * availability is not known yet; use {@link #setActionAvailable} to update it.
+     */
+    public WizardAction getNextAvailableAction(String currentActionId, int resultCode,
+            Predicate<WizardAction> isAvailable) {
+        if (LOGV) {
+            Log.v(TAG, "getNextAvailableAction(" + currentActionId + "," + resultCode + ")");
+        }
+        return getActionAt(getFirstAvailableIndex(
+                getNextActionIndex(getActionIndex(currentActionId), resultCode), isAvailable));
+    }
+
+    public void setActionAvailable(String actionId, boolean available) {
+        setActionAvailable(getActionIndex(actionId), available);
+    }
+
+    private void setActionAvailable(int index, boolean available) {
+        if (index < 0) {
+            return;
+        }
+        synchronized (mJumpLock) {
+            ensureJumpTable();
+            byte availability = available ? AVAILABILITY_AVAILABLE : AVAILABILITY_UNAVAILABLE;
+            if (mAvailability[index] == availability) {
+                return;
+            }
+            mAvailability[index] = availability;
+
+            // Only the actions whose skip chain passes through this one can change
+            final int count = mActions.length;
+            final int[] queue = new int[count];
+            final boolean[] queued = new boolean[count];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = index;
+            queued[index] = true;
+            while (head < tail) {
+                final int current = queue[head++];
+                mFirstAvailable[current] = resolveFirstAvailable(current);
+                for (int predecessor : mSkippedBy[current]) {
+                    if (!queued[predecessor]) {
+                        queued[predecessor] = true;
+                        queue[tail++] = predecessor;
+                    }
+                }
+            }
+            if (LOGV) {
+                Log.v(TAG, "setActionAvailable(" + mActions[index].getId() + "," + available
+                        + ") updated " + tail + " entries");
+            }
+        }
+    }
+
+    public void clearAvailability() {
+        synchronized (mJumpLock) {
+            if (mSkip != null) {
+                Arrays.fill(mAvailability, AVAILABILITY_UNKNOWN);
+                Arrays.fill(mFirstAvailable, UNRESOLVED);
+            }
+        }
+    }
+
+    private int getFirstAvailableIndex(int index, Predicate<WizardAction> isAvailable) {
+        if (index < 0) {
+            return NO_ACTION;
+        }
+        while (true) {
+            int current;
+            synchronized (mJumpLock) {
+                ensureJumpTable();
+                final int first = mFirstAvailable[index];
+                if (first != UNRESOLVED) {
+                    return first;
+                }
+                current = index;
+                while (mAvailability[current] != AVAILABILITY_UNKNOWN) {
+                    current = mSkip[current];
+                }
+            }
+            // Resolved outside of the lock, as the predicate may take its own locks
+            setActionAvailable(current, isAvailable.test(mActions[current]));
+        }
+    }
+
+    private void ensureJumpTable() {
+        if (mSkip != null) {
+            return;
+        }
+        final int count = mActions.length;
+        final int[] skip = new int[count];
+        final int[] skippedByCount = new int[count];
+        for (int i = 0; i < count; i++) {
+            skip[i] = mActions[i].getNextActionIndex(ResultCodes.RESULT_ACTIVITY_NOT_FOUND);
+            if (skip[i] >= 0) {
+                skippedByCount[skip[i]]++;
+            }
+        }
+        mSkippedBy = new int[count][];
+        for (int i = 0; i < count; i++) {
+            mSkippedBy[i] = new int[skippedByCount[i]];
+        }
+        for (int i = 0; i < count; i++) {
+            if (skip[i] >= 0) {
+                mSkippedBy[skip[i]][--skippedByCount[skip[i]]] = i;
+            }
+        }
+
+        mAvailability = new byte[count];
+        mFirstAvailable = new int[count];
+        Arrays.fill(mFirstAvailable, UNRESOLVED);
+        mSkip = skip;
+    }
+
+    private int resolveFirstAvailable(int index) {
+        int current = index;
+        // Bounded, so that a cycle of unavailable actions ends the chain
+        for (int hops = 0; current >= 0 && hops < mActions.length; hops++) {
+            if (mAvailability[current] == AVAILABILITY_AVAILABLE) {
+                return current;
+            } else if (mAvailability[current] == AVAILABILITY_UNKNOWN) {
+                return UNRESOLVED;
+            }
+            current = mSkip[current];
+        }
+        return NO_ACTION;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WizardScript)) return false;
+
+        WizardScript that = (WizardScript) o;
+
+        if (!Objects.equals(mFirstActionId, that.mFirstActionId)
+                || mActions.length != that.mActions.length) {
+            return false;
+        }
+        // Declaration order does not matter
+        for (WizardAction action : mActions) {
+            if (!action.equals(that.getAction(action.getId()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (WizardAction action : mActions) {
+            result += action.hashCode();
+        }
+        return 31 * Objects.hashCode(mFirstActionId) + result;
+    }
+
     public int describeContents() {
         return 0;
     }
 
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeString(this.mFirstActionId);
-        dest.writeTypedList(new ArrayList(this.mActions.values()));
+        dest.writeInt(this.mActions.length);
+        for (WizardAction action : this.mActions) {
+            action.writeToParcel(dest, flags);
+        }
     }
 
     public static final Creator<WizardScript> CREATOR = new Creator<WizardScript>() {
         public WizardScript createFromParcel(Parcel source) {
             String firstActionId = source.readString();
-            HashMap<String, WizardAction> actions = new HashMap();
-            ArrayList<WizardAction> actionList = new ArrayList();
-            source.readTypedList(actionList, WizardAction.CREATOR);
-            for (WizardAction action : actionList) {
-                actions.put(action.getId(), action);
+            WizardAction[] actions = new WizardAction[source.readInt()];
+            for (int i = 0; i < actions.length; i++) {
+                actions[i] = WizardAction.CREATOR.createFromParcel(source);
             }
-            return new WizardScript(actions, firstActionId);
+            return new WizardScript(actions, firstActionId, true);
         }
 
         public WizardScript[] newArray(int size) {
@@ -133,7 +395,98 @@ public class WizardScript implements Parcelable {
         }
     };
 
+    /**
+     * Loads the script behind {@code uriString}, preferring the table compiled from it at build
+     * time and falling back to parsing the XML when no compiled table is available.
+     */
     public static WizardScript loadFromUri(Context context, String uriString) {
+        WizardScript wizardScript = loadCompiled(context, uriString);
+        return wizardScript != null ? wizardScript : loadXmlFromUri(context, uriString);
+    }
+
+    @VisibleForTesting
+    static WizardScript loadCompiled(Context context, String uriString) {
+        try {
+            ContentResolver.OpenResourceIdResult openResourceIdResult =
+                    context.getContentResolver().getResourceId(Uri.parse(uriString));
+            final Resources res = openResourceIdResult.r;
+            int compiledId = res.getIdentifier(
+                    res.getResourceEntryName(openResourceIdResult.id) + COMPILED_SUFFIX,
+                    "raw", res.getResourcePackageName(openResourceIdResult.id));
+            if (compiledId == 0) {
+                if (LOGV) {
+                    Log.v(TAG, "No compiled wizard_script for " + uriString);
+                }
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(res.openRawResource(compiledId)))) {
+                return readCompiled(in);
+            }
+        } catch (FileNotFoundException | Resources.NotFoundException e) {
+            Log.e(TAG, "Cannot find compiled wizard_script: " + uriString);
+            Log.e(TAG, e.getMessage());
+        } catch (IOException ioe) {
+            Log.e(TAG, "Unable to read compiled wizard_script: " + uriString);
+            Log.e(TAG, ioe.getMessage());
+        }
+        return null;
+    }
+
+    private static WizardScript readCompiled(DataInputStream in) throws IOException {
+        if (in.readInt() != COMPILED_MAGIC) {
+            throw new IOException("Bad magic");
+        }
+        int version = in.readInt();
+        if (version != COMPILED_VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+
+        final String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        final String firstActionId = getCompiledString(strings, in.readInt());
+        final int actionCount = in.readInt();
+        final WizardAction[] actions = new WizardAction[actionCount];
+        for (int i = 0; i < actionCount; i++) {
+            String id = getCompiledString(strings, in.readInt());
+            String uri = getCompiledString(strings, in.readInt());
+            String requires = getCompiledString(strings, in.readInt());
+            String extras = getCompiledString(strings, in.readInt());
+            int timeoutMillis = in.readInt();
+            String sections = getCompiledString(strings, in.readInt());
+            String defaultAction = getCompiledString(strings, in.readInt());
+            // Written in ascending result code order
+            final int resultCount = in.readInt();
+            final int[] resultCodes = new int[resultCount];
+            final String[] targets = new String[resultCount];
+            for (int j = 0; j < resultCount; j++) {
+                resultCodes[j] = in.readInt();
+                targets[j] = getCompiledString(strings, in.readInt());
+            }
+            try {
+                actions[i] = new WizardAction(id, uri, requires, extras, timeoutMillis,
+                        sections, new WizardTransitions(defaultAction, resultCodes, targets));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad action " + id + ": " + e.getMessage());
+            }
+        }
+        return new WizardScript(actions, firstActionId);
+    }
+
+    private static String getCompiledString(String[] strings, int index) throws IOException {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("String index out of range: " + index);
+        }
+        return strings[index];
+    }
+
+    @VisibleForTesting
+    static WizardScript loadXmlFromUri(Context context, String uriString) {
         XmlPullParser xmlPullParser;
         WizardScript wizardScript = null;
         try {
@@ -189,7 +542,7 @@ public class WizardScript implements Parcelable {
             throw new XmlPullParserException("WizardScript must define a firstAction");
         }
 
-        HashMap wizardActions = new HashMap();
+        LinkedHashMap<String, WizardAction> wizardActions = new LinkedHashMap<>();
         int type;
         final int depth = parser.getDepth();
         while (((type = parser.next()) != XmlPullParser.END_TAG ||
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Parcel;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Snapshots parsed wizard scripts to app-private storage, so that a process restarted in the
+ * middle of setup can restore its script with a single read instead of parsing it again.
+ *
+ * <p>Snapshots are keyed by the APK version and the script URI. Snapshots written by any other
+ * APK version are deleted on the next write.
+ */
+class WizardScriptCache {
+
+    private static final String TAG = WizardScriptCache.class.getSimpleName();
+
+    private static final String CACHE_DIR = "wizard_scripts";
+
+    private WizardScriptCache() {
+    }
+
+    static WizardScript read(Context context, String scriptUri) {
+        final File file = getFile(context, scriptUri);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            final byte[] data = new AtomicFile(file).readFully();
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            if (!scriptUri.equals(parcel.readString())) {
+                // Hash collision with another script
+                return null;
+            }
+            WizardScript wizardScript = parcel.readParcelable(
+                    WizardScript.class.getClassLoader());
+            if (LOGV) {
+                Log.v(TAG, "Restored " + scriptUri + " from " + file);
+            }
+            return wizardScript;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to restore wizard script snapshot " + file, e);
+            file.delete();
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    static void write(Context context, String scriptUri, WizardScript wizardScript) {
+        final File file = getFile(context, scriptUri);
+        if (file == null) {
+            return;
+        }
+        deleteStale(file);
+        final Parcel parcel = Parcel.obtain();
+        final AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream out = null;
+        try {
+            parcel.writeString(scriptUri);
+            parcel.writeParcelable(wizardScript, 0);
+            out = atomicFile.startWrite();
+            out.write(parcel.marshall());
+            atomicFile.finishWrite(out);
+            if (LOGV) {
+                Log.v(TAG, "Saved " + scriptUri + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save wizard script snapshot " + file, e);
+            atomicFile.failWrite(out);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    static void clear(Context context) {
+        final File[] files = getDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static void deleteStale(File current) {
+        final String prefix = getVersionPrefix(current.getName());
+        final File[] files = current.getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().startsWith(prefix)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static File getDir(Context context) {
+        return new File(context.getCacheDir(), CACHE_DIR);
+    }
+
+    private static File getFile(Context context, String scriptUri) {
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        final File dir = getDir(context);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Unable to create " + dir);
+            return null;
+        }
+        // System apps keep their versionCode across OTAs; lastUpdateTime changes on upgrade
+        return new File(dir, packageInfo.getLongVersionCode() + "-"
+                + packageInfo.lastUpdateTime + "-"
+                + Integer.toHexString(scriptUri.hashCode()));
+    }
+
+    private static String getVersionPrefix(String fileName) {
+        return fileName.substring(0, fileName.lastIndexOf('-') + 1);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loaded wizard scripts, shared by every caller in the process.
+ *
+ * <p>Each script is loaded at most once at a time: concurrent callers for the same URI wait
+ * for the load already in flight instead of starting their own.
+ */
+public class WizardScriptRegistry {
+
+    public static final String TAG = WizardScriptRegistry.class.getSimpleName();
+
+    private static WizardScriptRegistry sInstance;
+
+    private final Context mContext;
+    private final ConcurrentHashMap<String, CompletableFuture<WizardScript>> mScripts =
+            new ConcurrentHashMap<>();
+
+    public static synchronized WizardScriptRegistry getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WizardScriptRegistry(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WizardScriptRegistry(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Starts loading {@code scriptUri} on a background thread, unless it is already loaded or
+     * loading.
+     *
+     * @return A future completed with the script once it is loaded, or with null if it cannot
+     * be loaded.
+     */
+    public CompletableFuture<WizardScript> preload(String scriptUri) {
+        final CompletableFuture<WizardScript> future = new CompletableFuture<>();
+        final CompletableFuture<WizardScript> existing = mScripts.putIfAbsent(scriptUri, future);
+        if (existing != null) {
+            return existing;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> load(scriptUri, future));
+        return future;
+    }
+
+    /**
+     * @return The script behind {@code scriptUri}, loading it on the calling thread if nobody
+     * has started to, or null if it cannot be loaded.
+     */
+    public WizardScript get(String scriptUri) {
+        final CompletableFuture<WizardScript> future = new CompletableFuture<>();
+        final CompletableFuture<WizardScript> existing = mScripts.putIfAbsent(scriptUri, future);
+        if (existing != null) {
+            if (LOGV && !existing.isDone()) {
+                Log.v(TAG, "Waiting for " + scriptUri + " to load");
+            }
+            return existing.join();
+        }
+        load(scriptUri, future);
+        return future.join();
+    }
+
+    public void remove(String scriptUri) {
+        mScripts.remove(scriptUri);
+    }
+
+    private void load(String scriptUri, CompletableFuture<WizardScript> future) {
+        Trace.beginSection("WizardScriptRegistry.load");
+        final long start = SystemClock.elapsedRealtime();
+        WizardScript wizardScript = null;
+        try {
+            // The process may have died mid-flow; restore the snapshot if there is one
+            wizardScript = WizardScriptCache.read(mContext, scriptUri);
+            if (wizardScript == null) {
+                wizardScript = WizardScript.loadFromUri(mContext, scriptUri);
+                if (wizardScript != null) {
+                    final WizardScript snapshot = wizardScript;
+                    AsyncTask.THREAD_POOL_EXECUTOR.execute(() ->
+                            WizardScriptCache.write(mContext, scriptUri, snapshot));
+                }
+            }
+            if (wizardScript != null) {
+                ActionAvailability.getInstance(mContext).prefetch(wizardScript);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to load " + scriptUri, e);
+        } finally {
+            if (wizardScript == null) {
+                // Let the next caller try again
+                mScripts.remove(scriptUri, future);
+            }
+            future.complete(wizardScript);
+            Trace.endSection();
+        }
+        if (LOGV) {
+            Log.v(TAG, "Loaded " + scriptUri + " in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms on "
+                    + Thread.currentThread().getName());
+        }
+    }
+}
@@ -22,21 +22,41 @@ import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.util.Log;
-import android.util.SparseArray;
 
-public class WizardTransitions extends SparseArray<String> implements Parcelable {
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Result code to action transitions of a {@link WizardAction}.
+ *
+ * <p>Result codes are kept sorted in a primitive array. Once {@link #link} has run, every target
+ * is also available as an index into the owning {@link WizardScript}, so routing does not need
+ * to look up action ids.
+ */
+public class WizardTransitions implements Parcelable {
 
     private static final String TAG = "WizardTransitions";
 
+    public static final int NO_ACTION = -1;
+
+    private static final int[] EMPTY_INT_ARRAY = new int[0];
+    private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
     private String mDefaultAction;
+    private int[] mResultCodes;
+    private String[] mActions;
+
+    // Indices into the owning script, set by link()
+    private int mDefaultActionIndex = NO_ACTION;
+    private int[] mActionIndices;
 
     public static final Creator<WizardTransitions> CREATOR = new Creator<WizardTransitions>() {
         public WizardTransitions createFromParcel(Parcel source) {
-            WizardTransitions transitions = new WizardTransitions(source);
-            SparseArray<String> actions = source.readSparseArray(null);
-            for (int i = 0; i < actions.size(); i++) {
-                transitions.put(actions.keyAt(i), actions.valueAt(i));
-            }
+            WizardTransitions transitions = new WizardTransitions(source.readString(),
+                    source.createIntArray(), source.createStringArray());
+            transitions.mDefaultActionIndex = source.readInt();
+            transitions.mActionIndices = source.createIntArray();
             return transitions;
         }
 
@@ -46,29 +66,110 @@ public class WizardTransitions extends SparseArray<String> implements Parcelable
     };
 
     public WizardTransitions() {
+        this(null, EMPTY_INT_ARRAY, EMPTY_STRING_ARRAY);
+    }
+
+    /**
+     * @param resultCodes Sorted result codes, parallel to {@code actions}.
+     */
+    WizardTransitions(String defaultAction, int[] resultCodes, String[] actions) {
+        mDefaultAction = defaultAction;
+        mResultCodes = resultCodes;
+        mActions = actions;
     }
 
     public void setDefaultAction(String action) {
         mDefaultAction = action;
+        mActionIndices = null;
+    }
+
+    public String getDefaultAction() {
+        return mDefaultAction;
     }
 
     public String getAction(int resultCode) {
-        return get(resultCode, mDefaultAction);
+        int i = Arrays.binarySearch(mResultCodes, resultCode);
+        return i >= 0 ? mActions[i] : mDefaultAction;
     }
 
-    @Override
-    public void put(int key, String value) {
+    /**
+     * @return The index in the owning script of the action for {@code resultCode}, or
+     * {@link #NO_ACTION}. Only valid after {@link #link}.
+     */
+    public int getActionIndex(int resultCode) {
+        int i = Arrays.binarySearch(mResultCodes, resultCode);
+        return i >= 0 ? mActionIndices[i] : mDefaultActionIndex;
+    }
+
+    public void put(int resultCode, String action) {
         if (LOGV) {
             Log.v(TAG, "put{" +
-                    "key='" + key + '\'' +
-                    ", value=" + value +
+                    "key='" + resultCode + '\'' +
+                    ", value=" + action +
                     '}');
         }
-        super.put(key, value);
+        int i = Arrays.binarySearch(mResultCodes, resultCode);
+        if (i >= 0) {
+            mActions[i] = action;
+        } else {
+            i = ~i;
+            final int size = mResultCodes.length;
+            int[] resultCodes = new int[size + 1];
+            String[] actions = new String[size + 1];
+            System.arraycopy(mResultCodes, 0, resultCodes, 0, i);
+            System.arraycopy(mActions, 0, actions, 0, i);
+            resultCodes[i] = resultCode;
+            actions[i] = action;
+            System.arraycopy(mResultCodes, i, resultCodes, i + 1, size - i);
+            System.arraycopy(mActions, i, actions, i + 1, size - i);
+            mResultCodes = resultCodes;
+            mActions = actions;
+        }
+        mActionIndices = null;
+    }
+
+    public int size() {
+        return mResultCodes.length;
+    }
+
+    public int keyAt(int index) {
+        return mResultCodes[index];
+    }
+
+    public String valueAt(int index) {
+        return mActions[index];
+    }
+
+    /**
+     * Resolves every target to its index in {@code actionIndices}.
+     */
+    void link(Map<String, Integer> actionIndices) {
+        mDefaultActionIndex = getIndex(actionIndices, mDefaultAction);
+        int[] indices = new int[mActions.length];
+        for (int i = 0; i < mActions.length; i++) {
+            indices[i] = getIndex(actionIndices, mActions[i]);
+        }
+        mActionIndices = indices;
+    }
+
+    boolean isLinked() {
+        return mActionIndices != null;
+    }
+
+    private static int getIndex(Map<String, Integer> actionIndices, String action) {
+        Integer index = action == null ? null : actionIndices.get(action);
+        return index == null ? NO_ACTION : index;
     }
 
     public String toString() {
-        return super.toString() + " mDefaultAction: " + mDefaultAction;
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < mResultCodes.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(mResultCodes[i]).append('=').append(mActions[i]);
+        }
+        return sb.append("} mDefaultAction: ").append(mDefaultAction).toString();
     }
 
     @Override
@@ -76,13 +177,16 @@ public class WizardTransitions extends SparseArray<String> implements Parcelable
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         WizardTransitions that = (WizardTransitions) o;
-        return mDefaultAction != null ? mDefaultAction.equals(that.mDefaultAction)
-                : that.mDefaultAction == null;
-
+        return Objects.equals(mDefaultAction, that.mDefaultAction)
+                && Arrays.equals(mResultCodes, that.mResultCodes)
+                && Arrays.equals(mActions, that.mActions);
     }
 
     public int hashCode() {
-        return super.hashCode() + mDefaultAction.hashCode();
+        int result = Objects.hashCode(mDefaultAction);
+        result = 31 * result + Arrays.hashCode(mResultCodes);
+        result = 31 * result + Arrays.hashCode(mActions);
+        return result;
     }
 
     @Override
@@ -93,16 +197,10 @@ public class WizardTransitions extends SparseArray<String> implements Parcelable
     @Override
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeString(mDefaultAction);
-        int size = size();
-        SparseArray sparseArray = new SparseArray<>(size);
-        for (int i = 0; i < size; i++) {
-            sparseArray.put(keyAt(i), valueAt(i));
-        }
-        dest.writeSparseArray(sparseArray);
-    }
-
-    protected WizardTransitions(Parcel in) {
-        mDefaultAction = in.readString();
+        dest.writeIntArray(mResultCodes);
+        dest.writeStringArray(mActions);
+        // Linked indices as well, so that unparcelling does not need to look up ids again
+        dest.writeInt(mDefaultActionIndex);
+        dest.writeIntArray(mActionIndices);
     }
-
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ordering, gates and the once-only start of {@link TaskGraph}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskGraphTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final ExecutorService mPool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        mPool.shutdownNow();
+    }
+
+    @Test
+    public void nothingRunsBeforeStart() {
+        final TaskGraph graph = new TaskGraph("test", Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        graph.addTask("task", runs::incrementAndGet);
+        assertEquals(0, runs.get());
+        assertFalse(graph.isDone());
+        graph.start();
+        assertEquals(1, runs.get());
+        assertTrue(graph.isDone());
+    }
+
+    @Test
+    public void runsDependenciesFirst() {
+        final TaskGraph graph = new TaskGraph("test", mPool);
+        final List<String> order = new ArrayList<>();
+        final TaskGraph.Node a = graph.addTask("a", () -> record(order, "a"));
+        final TaskGraph.Node b = graph.addTask("b", () -> record(order, "b"), a);
+        graph.addTask("c", () -> record(order, "c"), a, b);
+        graph.start();
+        graph.whenDone().orTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+        assertEquals(List.of("a", "b", "c"), order);
+    }
+
+    @Test
+    public void gateHoldsDependents() {
+        final TaskGraph graph = new TaskGraph("test", Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskGraph.Node gate = graph.addGate("gate");
+        final TaskGraph.Node free = graph.addTask("free", () -> { });
+        final TaskGraph.Node held = graph.addTask("held", runs::incrementAndGet, gate);
+        graph.start();
+        assertTrue(free.isDone());
+        assertFalse(held.isDone());
+        assertEquals(0, runs.get());
+        assertTrue(graph.whenDone(free).isDone());
+        assertFalse(graph.whenDone().isDone());
+
+        graph.open(gate);
+        assertEquals(1, runs.get());
+        assertTrue(graph.isDone());
+        assertTrue(graph.whenDone().isDone());
+    }
+
+    @Test
+    public void gateOpenedBeforeStart() {
+        final TaskGraph graph = new TaskGraph("test", Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskGraph.Node gate = graph.addGate("gate");
+        graph.addTask("held", runs::incrementAndGet, gate);
+        graph.open(gate);
+        assertEquals(0, runs.get());
+        graph.start();
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void failedTaskCountsAsDone() {
+        final TaskGraph graph = new TaskGraph("test", Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskGraph.Node failing = graph.addTask("failing", () -> {
+            throw new IllegalStateException("expected");
+        });
+        graph.addTask("dependent", runs::incrementAndGet, failing);
+        graph.start();
+        assertEquals(1, runs.get());
+        assertTrue(graph.isDone());
+        // Completes normally, so that waiters do not see the failure
+        graph.whenDone().join();
+    }
+
+    @Test
+    public void startsOnce() {
+        final TaskGraph graph = new TaskGraph("test", Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        graph.addTask("task", runs::incrementAndGet);
+        graph.start();
+        graph.start();
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void concurrentStartsRunEachTaskOnce() throws InterruptedException {
+        final TaskGraph graph = new TaskGraph("test", mPool);
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskGraph.Node gate = graph.addGate("gate");
+        for (int i = 0; i < 16; i++) {
+            graph.addTask("task" + i, runs::incrementAndGet, gate);
+        }
+        final int threads = 8;
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Thread> starters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final Thread starter = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                graph.start();
+                graph.open(gate);
+            });
+            starter.start();
+            starters.add(starter);
+        }
+        assertTrue(ready.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        go.countDown();
+        for (Thread starter : starters) {
+            starter.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        }
+        graph.whenDone().orTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+        assertEquals(16, runs.get());
+    }
+
+    @Test
+    public void taskOnItsOwnExecutor() {
+        final TaskGraph graph = new TaskGraph("test", mPool);
+        final List<String> ran = new ArrayList<>();
+        graph.addTask("inline", Runnable::run, () -> record(ran, "inline"));
+        graph.start();
+        // Ran on the starting thread, as the executor given for the task runs it inline
+        assertEquals(List.of("inline"), ran);
+    }
+
+    @Test
+    public void emptyGraph() {
+        final TaskGraph graph = new TaskGraph("test", Runnable::run);
+        assertFalse(graph.isDone());
+        graph.start();
+        assertTrue(graph.isDone());
+        assertTrue(graph.whenDone().isDone());
+    }
+
+    private static void record(List<String> order, String name) {
+        synchronized (order) {
+            order.add(name);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_ACTION_ID;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Eviction of old steps from {@link WizardHistory} and their relaunch through Back.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WizardHistoryTest {
+
+    /**
+     * A step that records being finished instead of going through the framework.
+     */
+    public static class StepActivity extends Activity {
+        boolean mFinished;
+
+        @Override
+        public void finish() {
+            mFinished = true;
+        }
+
+        @Override
+        public boolean isFinishing() {
+            return mFinished;
+        }
+    }
+
+    private WizardHistory mHistory;
+
+    @Before
+    public void setUp() {
+        mHistory = new WizardHistory();
+    }
+
+    @Test
+    public void keepsLiveSteps() {
+        final StepActivity[] steps = pushSaved(WizardHistory.MAX_LIVE_STEPS);
+        for (StepActivity step : steps) {
+            assertFalse(step.mFinished);
+        }
+        assertNull(mHistory.popEvicted());
+    }
+
+    @Test
+    public void evictsOldestSavedStep() {
+        final StepActivity[] steps = pushSaved(WizardHistory.MAX_LIVE_STEPS + 1);
+        assertTrue(steps[0].mFinished);
+        for (int i = 1; i < steps.length; i++) {
+            assertFalse(steps[i].mFinished);
+        }
+    }
+
+    @Test
+    public void keepsUnsavedStepUntilSaved() {
+        final StepActivity first = newStep("first");
+        final long firstId = mHistory.newId();
+        mHistory.push(firstId, first);
+        pushSaved(WizardHistory.MAX_LIVE_STEPS);
+        assertFalse(first.mFinished);
+
+        mHistory.onStateSaved(firstId, new Bundle());
+        pushSaved(1);
+        assertTrue(first.mFinished);
+    }
+
+    @Test
+    public void relaunchesEvictedStepWithItsState() {
+        final StepActivity first = newStep("first");
+        final long firstId = mHistory.newId();
+        final Bundle state = new Bundle();
+        state.putString("key", "value");
+        mHistory.onStateSaved(firstId, state);
+        mHistory.push(firstId, first);
+        final long[] ids = new long[WizardHistory.MAX_LIVE_STEPS];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mHistory.newId();
+            mHistory.onStateSaved(ids[i], new Bundle());
+            mHistory.push(ids[i], newStep("step" + i));
+        }
+        assertTrue(first.mFinished);
+
+        // Back through the live steps to the one right after the evicted step
+        for (int i = ids.length - 1; i >= 0; i--) {
+            assertNull(mHistory.popEvicted());
+            mHistory.onReturned(ids[i]);
+        }
+        final Intent intent = mHistory.popEvicted();
+        assertNotNull(intent);
+        assertEquals("test.first", intent.getAction());
+        assertEquals("first", intent.getStringExtra(EXTRA_ACTION_ID));
+        assertEquals(firstId, intent.getLongExtra(WizardHistory.EXTRA_SNAPSHOT_ID, 0));
+
+        final Bundle snapshot = mHistory.takeSnapshot(intent);
+        assertNotNull(snapshot);
+        assertEquals("value", snapshot.getString("key"));
+        assertNull(mHistory.takeSnapshot(intent));
+        assertNull(mHistory.popEvicted());
+    }
+
+    @Test
+    public void evictsRecreatedActivity() {
+        final long firstId = mHistory.newId();
+        final StepActivity first = newStep("first");
+        mHistory.push(firstId, first);
+        final StepActivity recreated = newStep("first");
+        mHistory.onCreated(firstId, recreated);
+        mHistory.onStateSaved(firstId, new Bundle());
+        pushSaved(WizardHistory.MAX_LIVE_STEPS);
+        assertFalse(first.mFinished);
+        assertTrue(recreated.mFinished);
+    }
+
+    @Test
+    public void finishingOnItsOwnForgetsStep() {
+        final long firstId = mHistory.newId();
+        final StepActivity first = newStep("first");
+        mHistory.onStateSaved(firstId, new Bundle());
+        mHistory.push(firstId, first);
+        mHistory.onFinished(firstId);
+        pushSaved(WizardHistory.MAX_LIVE_STEPS);
+        assertFalse(first.mFinished);
+    }
+
+    @Test
+    public void evictedStepOutlivesItsActivityFinishing() {
+        final long firstId = mHistory.newId();
+        mHistory.onStateSaved(firstId, new Bundle());
+        mHistory.push(firstId, newStep("first"));
+        final long[] ids = new long[WizardHistory.MAX_LIVE_STEPS];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mHistory.newId();
+            mHistory.onStateSaved(ids[i], new Bundle());
+            mHistory.push(ids[i], newStep("step" + i));
+        }
+        // As the framework reports for the activity that eviction finished
+        mHistory.onFinished(firstId);
+        mHistory.onReturned(ids[0]);
+        assertNotNull(mHistory.popEvicted());
+    }
+
+    @Test
+    public void clear() {
+        pushSaved(WizardHistory.MAX_LIVE_STEPS + 1);
+        mHistory.clear();
+        assertNull(mHistory.popEvicted());
+    }
+
+    /**
+     * Pushes {@code count} new steps, each with its state saved.
+     */
+    private StepActivity[] pushSaved(int count) {
+        final StepActivity[] steps = new StepActivity[count];
+        for (int i = 0; i < count; i++) {
+            final long id = mHistory.newId();
+            steps[i] = newStep("step" + id);
+            mHistory.onStateSaved(id, new Bundle());
+            mHistory.push(id, steps[i]);
+        }
+        return steps;
+    }
+
+    private static StepActivity newStep(String actionId) {
+        // Activities make a Handler of their own, so need a looper
+        final StepActivity[] step = new StepActivity[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                () -> step[0] = new StepActivity());
+        step[0].setIntent(new Intent("test." + actionId).putExtra(EXTRA_ACTION_ID, actionId));
+        return step[0];
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import android.content.Context;
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.setupwizard.R;
+
+/**
+ * Cost of the parcel round trip WizardScriptCache does to snapshot and restore the main
+ * script.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WizardScriptParcelBenchmark {
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private WizardScript mScript;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mScript = WizardScript.loadFromUri(context,
+                context.getString(R.string.lineage_wizard_script_uri));
+    }
+
+    @Test
+    public void write() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final Parcel parcel = Parcel.obtain();
+        try {
+            while (state.keepRunning()) {
+                parcel.setDataPosition(0);
+                mScript.writeToParcel(parcel, 0);
+            }
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void read() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final Parcel parcel = Parcel.obtain();
+        try {
+            mScript.writeToParcel(parcel, 0);
+            while (state.keepRunning()) {
+                parcel.setDataPosition(0);
+                WizardScript.CREATOR.createFromParcel(parcel);
+            }
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
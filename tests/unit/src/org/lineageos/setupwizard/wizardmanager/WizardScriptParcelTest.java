@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.setupcompat.util.ResultCodes;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.setupwizard.R;
+
+/**
+ * Round trips of the flat parcel layout of {@link WizardScript} and {@link WizardTransitions}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WizardScriptParcelTest {
+
+    @Test
+    public void transitionsKeepDefaultAction() {
+        final WizardTransitions transitions = new WizardTransitions();
+        transitions.setDefaultAction("next");
+        transitions.put(ResultCodes.RESULT_SKIP, "skipped");
+        final WizardTransitions copy = roundTrip(transitions, WizardTransitions.CREATOR);
+        assertEquals(transitions, copy);
+        assertEquals("next", copy.getDefaultAction());
+        assertEquals("next", copy.getAction(Activity.RESULT_OK));
+        assertEquals("skipped", copy.getAction(ResultCodes.RESULT_SKIP));
+    }
+
+    @Test
+    public void transitionsWithoutDefaultAction() {
+        final WizardTransitions transitions = new WizardTransitions();
+        transitions.put(ResultCodes.RESULT_SKIP, "skipped");
+        final WizardTransitions copy = roundTrip(transitions, WizardTransitions.CREATOR);
+        assertEquals(transitions, copy);
+        assertNull(copy.getDefaultAction());
+        assertNull(copy.getAction(Activity.RESULT_OK));
+    }
+
+    @Test
+    public void emptyTransitions() {
+        final WizardTransitions transitions = new WizardTransitions();
+        assertEquals(transitions, roundTrip(transitions, WizardTransitions.CREATOR));
+    }
+
+    @Test
+    public void scriptKeepsActionsAndLinks() {
+        final WizardScript script = createScript();
+        final WizardScript copy = roundTrip(script, WizardScript.CREATOR);
+        assertEquals(script, copy);
+        assertEquals("welcome", copy.getFirstActionId());
+        for (WizardAction action : copy.getActions()) {
+            assertTrue(action.getId(), action.isLinked());
+        }
+        for (int i = 0; i < script.getActions().size(); i++) {
+            assertEquals(script.getNextActionIndex(i, Activity.RESULT_OK),
+                    copy.getNextActionIndex(i, Activity.RESULT_OK));
+            assertEquals(script.getNextActionIndex(i, ResultCodes.RESULT_SKIP),
+                    copy.getNextActionIndex(i, ResultCodes.RESULT_SKIP));
+        }
+    }
+
+    @Test
+    public void scriptKeepsAttributes() {
+        final WizardAction network = roundTrip(createScript(), WizardScript.CREATOR)
+                .getAction("network");
+        assertEquals("hasWifi", network.getRequiresExpression());
+        assertEquals("foo", network.getExtrasExpression());
+        assertEquals(10000, network.getTimeoutMillis());
+        assertEquals("a.ONE,a.TWO", network.getSectionsExpression());
+    }
+
+    @Test
+    public void shippedScriptsRoundTrip() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final WizardScript script = WizardScript.loadFromUri(context,
+                context.getString(R.string.lineage_wizard_script_uri));
+        assertEquals(script, roundTrip(script, WizardScript.CREATOR));
+    }
+
+    static WizardScript createScript() {
+        final WizardTransitions welcome = new WizardTransitions();
+        welcome.setDefaultAction("network");
+        final WizardTransitions network = new WizardTransitions();
+        network.setDefaultAction("finish");
+        network.put(ResultCodes.RESULT_SKIP, "welcome");
+        final WizardTransitions finish = new WizardTransitions();
+        return new WizardScript(new WizardAction[]{
+                new WizardAction("welcome", "intent:#Intent;action=a.WELCOME;end", welcome),
+                new WizardAction("network", "intent:#Intent;action=a.NETWORK;end", "hasWifi",
+                        "foo", 10000, "a.ONE,a.TWO", network),
+                new WizardAction("finish", "intent:#Intent;action=a.FINISH;end", finish),
+        }, "welcome");
+    }
+
+    static <T extends Parcelable> T roundTrip(T value, Parcelable.Creator<T> creator) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            value.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return creator.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import android.app.Activity;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.setupcompat.util.ResultCodes;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The skip-chain jump table of {@link WizardScript}: which action the RESULT_ACTIVITY_NOT_FOUND
+ * chain lands on, and when availability is asked for again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WizardScriptSkipChainTest {
+
+    private static final Predicate<WizardAction> NOT_ASKED = action -> {
+        fail("Availability of " + action.getId() + " asked for again");
+        return false;
+    };
+
+    /**
+     * Records which actions availability was asked for, answering from {@code unavailable}.
+     */
+    private static class Availability implements Predicate<WizardAction> {
+        final List<String> mAsked = new ArrayList<>();
+        private final Set<String> mUnavailable;
+
+        Availability(String... unavailable) {
+            mUnavailable = Set.of(unavailable);
+        }
+
+        @Override
+        public boolean test(WizardAction action) {
+            mAsked.add(action.getId());
+            return !mUnavailable.contains(action.getId());
+        }
+    }
+
+    @Test
+    public void skipsUnavailableActions() {
+        final WizardScript script = linear("a", "b", "c", "d");
+        final Availability availability = new Availability("b", "c");
+        assertEquals("d", script.getNextAvailableAction("a", Activity.RESULT_OK,
+                availability).getId());
+        assertEquals(List.of("b", "c", "d"), availability.mAsked);
+    }
+
+    @Test
+    public void asksOncePerAction() {
+        final WizardScript script = linear("a", "b", "c", "d");
+        script.getNextAvailableAction("a", Activity.RESULT_OK, new Availability("b"));
+        // Every action on the chain from b is known now, whichever action it is entered at
+        assertEquals("c", script.getNextAvailableAction("a", Activity.RESULT_OK,
+                NOT_ASKED).getId());
+        assertEquals("c", script.getFirstAvailableActionFrom("b", NOT_ASKED).getId());
+        assertEquals("c", script.getFirstAvailableActionFrom("c", NOT_ASKED).getId());
+    }
+
+    @Test
+    public void firstAvailableAction() {
+        final WizardScript script = linear("a", "b", "c");
+        assertEquals("b", script.getFirstAvailableAction(new Availability("a")).getId());
+    }
+
+    @Test
+    public void firstAvailableActionFromUnknownId() {
+        final WizardScript script = linear("a", "b", "c");
+        assertEquals("a", script.getFirstAvailableActionFrom("unknown",
+                new Availability()).getId());
+    }
+
+    @Test
+    public void becomingAvailableUpdatesPredecessors() {
+        final WizardScript script = linear("a", "b", "c", "d");
+        script.getNextAvailableAction("a", Activity.RESULT_OK, new Availability("b", "c"));
+        script.setActionAvailable("c", true);
+        assertEquals("c", script.getNextAvailableAction("a", Activity.RESULT_OK,
+                NOT_ASKED).getId());
+        assertEquals("c", script.getFirstAvailableActionFrom("b", NOT_ASKED).getId());
+    }
+
+    @Test
+    public void becomingUnavailableUpdatesPredecessors() {
+        final WizardScript script = linear("a", "b", "c", "d");
+        assertEquals("c", script.getNextAvailableAction("a", Activity.RESULT_OK,
+                new Availability("b")).getId());
+        script.setActionAvailable("d", true);
+        script.setActionAvailable("c", false);
+        assertEquals("d", script.getNextAvailableAction("a", Activity.RESULT_OK,
+                NOT_ASKED).getId());
+        assertEquals("d", script.getFirstAvailableActionFrom("c", NOT_ASKED).getId());
+    }
+
+    @Test
+    public void clearAvailabilityAsksAgain() {
+        final WizardScript script = linear("a", "b", "c");
+        script.getFirstAvailableAction(new Availability("a"));
+        script.clearAvailability();
+        final Availability availability = new Availability();
+        assertEquals("a", script.getFirstAvailableAction(availability).getId());
+        assertEquals(List.of("a"), availability.mAsked);
+    }
+
+    @Test
+    public void endOfChain() {
+        final WizardScript script = linear("a", "b", "c");
+        assertNull(script.getNextAvailableAction("a", Activity.RESULT_OK,
+                new Availability("b", "c")));
+    }
+
+    @Test
+    public void unavailableCycleEndsChain() {
+        final WizardTransitions a = new WizardTransitions();
+        a.setDefaultAction("b");
+        final WizardTransitions b = new WizardTransitions();
+        b.setDefaultAction("a");
+        final WizardScript script = new WizardScript(new WizardAction[]{
+                action("a", a), action("b", b)}, "a");
+        assertNull(script.getFirstAvailableAction(new Availability("a", "b")));
+    }
+
+    @Test
+    public void followsActivityNotFoundTransition() {
+        // b skips to d rather than taking its default transition to c
+        final WizardTransitions a = new WizardTransitions();
+        a.setDefaultAction("b");
+        final WizardTransitions b = new WizardTransitions();
+        b.setDefaultAction("c");
+        b.put(ResultCodes.RESULT_ACTIVITY_NOT_FOUND, "d");
+        final WizardTransitions c = new WizardTransitions();
+        c.setDefaultAction("d");
+        final WizardScript script = new WizardScript(new WizardAction[]{
+                action("a", a), action("b", b), action("c", c),
+                action("d", new WizardTransitions())}, "a");
+        final Availability availability = new Availability("b");
+        assertEquals("d", script.getNextAvailableAction("a", Activity.RESULT_OK,
+                availability).getId());
+        assertEquals(List.of("b", "d"), availability.mAsked);
+    }
+
+    @Test
+    public void canceledHasNoNextAction() {
+        final WizardScript script = linear("a", "b");
+        assertNull(script.getNextAvailableAction("a", Activity.RESULT_CANCELED, NOT_ASKED));
+    }
+
+    /**
+     * @return A script of {@code ids} in order, each transitioning to the next by default.
+     */
+    private static WizardScript linear(String... ids) {
+        final WizardAction[] actions = new WizardAction[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            final WizardTransitions transitions = new WizardTransitions();
+            if (i + 1 < ids.length) {
+                transitions.setDefaultAction(ids[i + 1]);
+            }
+            actions[i] = action(ids[i], transitions);
+        }
+        return new WizardScript(actions, ids[0]);
+    }
+
+    private static WizardAction action(String id, WizardTransitions transitions) {
+        return new WizardAction(id, "intent:#Intent;action=test." + id + ";end", transitions);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.setupwizard.R;
+
+/**
+ * Checks that the tables compiled at build time load into the same graphs as their XML.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WizardScriptTest {
+
+    private static final int[] SCRIPT_URIS = {
+            R.string.lineage_wizard_script_uri,
+            R.string.lineage_wizard_script_user_uri,
+            R.string.lineage_wizard_script_managed_profile_uri,
+    };
+
+    private final Context mContext =
+            InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Test
+    public void compiledScriptsEqualXml() {
+        for (int resId : SCRIPT_URIS) {
+            final String uri = mContext.getString(resId);
+            final WizardScript compiled = WizardScript.loadCompiled(mContext, uri);
+            final WizardScript xml = WizardScript.loadXmlFromUri(mContext, uri);
+            assertNotNull("No compiled table for " + uri, compiled);
+            assertNotNull("Unable to parse " + uri, xml);
+            assertEquals(uri, xml, compiled);
+        }
+    }
+
+    @Test
+    public void compiledScriptsKeepDeclarationOrder() {
+        for (int resId : SCRIPT_URIS) {
+            final String uri = mContext.getString(resId);
+            final WizardScript compiled = WizardScript.loadCompiled(mContext, uri);
+            final WizardScript xml = WizardScript.loadXmlFromUri(mContext, uri);
+            assertEquals(uri, xml.getActions().size(), compiled.getActions().size());
+            for (int i = 0; i < xml.getActions().size(); i++) {
+                assertEquals(uri, xml.getActions().get(i).getId(),
+                        compiled.getActions().get(i).getId());
+            }
+        }
+    }
+
+    @Test
+    public void loadFromUriPrefersCompiled() {
+        final String uri = mContext.getString(R.string.lineage_wizard_script_uri);
+        assertEquals(WizardScript.loadCompiled(mContext, uri),
+                WizardScript.loadFromUri(mContext, uri));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Host-side mirror of the on-device {@code ActionPredicate}, evaluated against a set of atoms
+ * that hold instead of the device.
+ */
+public class ActionPredicate {
+
+    // Must match ActionPredicate.Atom
+    static final Set<String> ATOMS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList("hasTelephony", "hasWifi", "hasLeanback", "hasBiometric",
+                    "simMissing", "bootloaderUnlocked", "debuggable", "bluetoothDisabled",
+                    "ethernetConnected", "keyguardSecure")));
+
+    private final String mExpression;
+    private final String[][] mClauses;
+
+    private ActionPredicate(String expression, String[][] clauses) {
+        mExpression = expression;
+        mClauses = clauses;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code expression} is malformed or names an unknown
+     * atom.
+     */
+    public static ActionPredicate parse(String expression) {
+        String[] clauses = expression.split(",", -1);
+        String[][] terms = new String[clauses.length][];
+        for (int i = 0; i < clauses.length; i++) {
+            terms[i] = clauses[i].split("\\|", -1);
+            for (int j = 0; j < terms[i].length; j++) {
+                String term = terms[i][j].trim();
+                String atom = term.startsWith("!") ? term.substring(1).trim() : term;
+                if (!ATOMS.contains(atom)) {
+                    throw new IllegalArgumentException("Unknown atom '" + atom + "' in "
+                            + expression);
+                }
+                terms[i][j] = term.startsWith("!") ? "!" + atom : atom;
+            }
+        }
+        return new ActionPredicate(expression, terms);
+    }
+
+    public boolean evaluate(Set<String> facts) {
+        for (String[] clause : mClauses) {
+            boolean holds = false;
+            for (String term : clause) {
+                holds |= term.startsWith("!")
+                        ? !facts.contains(term.substring(1)) : facts.contains(term);
+            }
+            if (!holds) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return mExpression;
+    }
+}
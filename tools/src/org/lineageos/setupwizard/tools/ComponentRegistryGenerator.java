@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Generates {@code WizardComponentRegistry}, which maps the intent actions used by the wizard
+ * scripts to the activities of this package that handle them, and those activities to the
+ * icons they declare.
+ *
+ * <p>Usage: {@code ComponentRegistryGenerator -m <AndroidManifest.xml> -o <out.java>
+ * <script.xml>...}. Actions that are not handled by an activity in the manifest are left out,
+ * so they keep going through implicit intent resolution. Icons are declared by a
+ * {@value #META_DATA_ICON} meta-data pointing at a drawable.
+ */
+public class ComponentRegistryGenerator {
+
+    private static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+
+    private static final String OUTPUT_PACKAGE = "org.lineageos.setupwizard.wizardmanager";
+    private static final String OUTPUT_CLASS = "WizardComponentRegistry";
+
+    static final String META_DATA_ICON = "org.lineageos.setupwizard.STEP_ICON";
+
+    private static final String DRAWABLE_PREFIX = "@drawable/";
+
+    public static void main(String[] args) throws IOException {
+        File manifest = null;
+        File output = null;
+        List<File> scripts = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-m".equals(args[i]) && i + 1 < args.length) {
+                manifest = new File(args[++i]);
+            } else if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = new File(args[++i]);
+            } else if (!"AndroidManifest.xml".equals(new File(args[i]).getName())) {
+                scripts.add(new File(args[i]));
+            }
+        }
+        if (manifest == null || output == null) {
+            System.err.println("usage: ComponentRegistryGenerator -m <AndroidManifest.xml> "
+                    + "-o <out.java> <script.xml>...");
+            System.exit(1);
+        }
+
+        Document document = parseManifest(manifest);
+        Element root = document.getDocumentElement();
+        String packageName = root.getAttribute("package");
+        Map<String, String> handlers = getActivityActions(root, packageName);
+        Map<String, String> icons = getActivityIcons(root, packageName);
+
+        // Sorted, so the output is stable across builds
+        Map<String, String> registry = new TreeMap<>();
+        for (File file : scripts) {
+            ScriptModel script = ScriptParser.parse(file);
+            for (ScriptModel.Action action : script.actions.values()) {
+                String intentAction = getIntentAction(action.uri);
+                if (intentAction != null && handlers.containsKey(intentAction)) {
+                    registry.put(intentAction, handlers.get(intentAction));
+                }
+            }
+        }
+
+        File dir = output.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        try (PrintWriter out = new PrintWriter(output, "UTF-8")) {
+            write(out, packageName, registry, icons);
+        }
+    }
+
+    static Document parseManifest(File manifest) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            return factory.newDocumentBuilder().parse(manifest);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Ill-formatted manifest: " + manifest, e);
+        }
+    }
+
+    static Map<String, String> getActivityActions(Element root, String packageName) {
+        Map<String, String> handlers = new TreeMap<>();
+        NodeList activities = root.getElementsByTagName("activity");
+        for (int i = 0; i < activities.getLength(); i++) {
+            Element activity = (Element) activities.item(i);
+            String className = getClassName(activity, packageName);
+            NodeList actions = activity.getElementsByTagName("action");
+            for (int j = 0; j < actions.getLength(); j++) {
+                Element action = (Element) actions.item(j);
+                handlers.putIfAbsent(action.getAttributeNS(ANDROID_NAMESPACE, "name"),
+                        className);
+            }
+        }
+        return handlers;
+    }
+
+    /**
+     * @return The drawable names of the {@value #META_DATA_ICON} meta-data of the activities
+     * declared by the manifest, keyed by class name.
+     */
+    static Map<String, String> getActivityIcons(Element root, String packageName)
+            throws IOException {
+        Map<String, String> icons = new TreeMap<>();
+        NodeList activities = root.getElementsByTagName("activity");
+        for (int i = 0; i < activities.getLength(); i++) {
+            Element activity = (Element) activities.item(i);
+            NodeList metaData = activity.getElementsByTagName("meta-data");
+            for (int j = 0; j < metaData.getLength(); j++) {
+                Element entry = (Element) metaData.item(j);
+                if (!META_DATA_ICON.equals(entry.getAttributeNS(ANDROID_NAMESPACE, "name"))) {
+                    continue;
+                }
+                String resource = entry.getAttributeNS(ANDROID_NAMESPACE, "resource");
+                if (!resource.startsWith(DRAWABLE_PREFIX)) {
+                    throw new IOException(META_DATA_ICON + " must be a drawable, not "
+                            + resource);
+                }
+                icons.put(getClassName(activity, packageName),
+                        resource.substring(DRAWABLE_PREFIX.length()));
+            }
+        }
+        return icons;
+    }
+
+    private static String getClassName(Element activity, String packageName) {
+        String className = activity.getAttributeNS(ANDROID_NAMESPACE, "name");
+        if (className.startsWith(".")) {
+            return packageName + className;
+        } else if (!className.contains(".")) {
+            return packageName + "." + className;
+        }
+        return className;
+    }
+
+    /**
+     * @return The action of an {@code intent:#Intent;...;end} URI, or null if the URI already
+     * names a package or component, or has no action.
+     */
+    static String getIntentAction(String uri) {
+        int start = uri.indexOf("#Intent;");
+        if (start < 0) {
+            return null;
+        }
+        String action = null;
+        for (String part : uri.substring(start + "#Intent;".length()).split(";")) {
+            if (part.startsWith("package=") || part.startsWith("component=")) {
+                return null;
+            } else if (part.startsWith("action=")) {
+                action = part.substring("action=".length());
+            }
+        }
+        return action;
+    }
+
+    private static void write(PrintWriter out, String packageName,
+            Map<String, String> registry, Map<String, String> icons) {
+        out.println("// Generated by ComponentRegistryGenerator. Do not edit.");
+        out.println();
+        out.println("package " + OUTPUT_PACKAGE + ";");
+        out.println();
+        out.println("public final class " + OUTPUT_CLASS + " {");
+        out.println();
+        out.println("    static final String PACKAGE_NAME = \"" + packageName + "\";");
+        out.println();
+        out.println("    private " + OUTPUT_CLASS + "() {");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * @return The activity of this app that handles {@code action}, or null");
+        out.println("     * if there is none.");
+        out.println("     */");
+        out.println("    public static String getClassName(String action) {");
+        out.println("        if (action == null) {");
+        out.println("            return null;");
+        out.println("        }");
+        out.println("        switch (action) {");
+        for (Map.Entry<String, String> entry : registry.entrySet()) {
+            out.println("            case \"" + entry.getKey() + "\":");
+            out.println("                return \"" + entry.getValue() + "\";");
+        }
+        out.println("            default:");
+        out.println("                return null;");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * @return The icon the activity {@code className} declares in the");
+        out.println("     * manifest, or -1 if it declares none.");
+        out.println("     */");
+        out.println("    public static int getIconResId(String className) {");
+        out.println("        if (className == null) {");
+        out.println("            return -1;");
+        out.println("        }");
+        out.println("        switch (className) {");
+        for (Map.Entry<String, String> entry : icons.entrySet()) {
+            out.println("            case \"" + entry.getKey() + "\":");
+            out.println("                return " + packageName + ".R.drawable."
+                    + entry.getValue() + ";");
+        }
+        out.println("            default:");
+        out.println("                return -1;");
+        out.println("        }");
+        out.println("    }");
+        out.println("}");
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Host-side mirror of {@code WizardScript}, free of framework dependencies so that it can be
+ * used by the build-time tools.
+ */
+public class ScriptModel {
+
+    public static class Action {
+        public final String id;
+        public final String uri;
+        public ActionPredicate requires;
+        public final Set<String> extras = new LinkedHashSet<>();
+        public int timeoutMillis;
+        public final Set<String> sections = new LinkedHashSet<>();
+        public String defaultTarget;
+        public final TreeMap<Integer, String> results = new TreeMap<>();
+
+        public Action(String id, String uri) {
+            this.id = id;
+            this.uri = uri;
+        }
+
+        public String getTarget(int resultCode) {
+            String target = results.get(resultCode);
+            return target != null ? target : defaultTarget;
+        }
+    }
+
+    public final String name;
+    public final String firstAction;
+    public final Map<String, Action> actions = new LinkedHashMap<>();
+
+    public ScriptModel(String name, String firstAction) {
+        this.name = name;
+        this.firstAction = firstAction;
+    }
+}
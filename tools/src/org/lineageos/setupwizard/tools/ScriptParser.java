@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Parses wizard script XML the same way {@code WizardScript.loadFromUri} does on device.
+ */
+public class ScriptParser {
+
+    // Must match WizardScript
+    static final String WIZARD_SCRIPT_NAMESPACE =
+            "http://schemas.android.com/apk/res/com.google.android.setupwizard";
+
+    static final String TAG_WIZARD_SCRIPT = "WizardScript";
+    static final String TAG_WIZARD_ACTION = "WizardAction";
+    static final String TAG_RESULT = "result";
+    static final String ATTR_ID = "id";
+    static final String ATTR_URI = "uri";
+    static final String ATTR_ACTION = "action";
+    static final String ATTR_FIRST_ACTION = "firstAction";
+    static final String ATTR_RESULT_CODE = "resultCode";
+    static final String ATTR_REQUIRES = "requires";
+    static final String ATTR_EXTRAS = "extras";
+    static final String ATTR_TIMEOUT = "timeout";
+    static final String ATTR_SECTIONS = "sections";
+
+    private ScriptParser() {
+    }
+
+    public static ScriptModel parse(File file) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().parse(file);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Ill-formatted wizard script: " + file, e);
+        }
+
+        Element root = document.getDocumentElement();
+        if (!TAG_WIZARD_SCRIPT.equals(root.getLocalName())) {
+            throw new IOException(file + ": XML document must start with <WizardScript> tag; "
+                    + "found " + root.getLocalName());
+        }
+        String firstAction = getWizardAttribute(root, ATTR_FIRST_ACTION);
+        if (firstAction == null) {
+            throw new IOException(file + ": WizardScript must define a firstAction");
+        }
+
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension > 0) {
+            name = name.substring(0, extension);
+        }
+        ScriptModel script = new ScriptModel(name, firstAction);
+        NodeList children = root.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child instanceof Element
+                    && TAG_WIZARD_ACTION.equals(child.getLocalName())) {
+                ScriptModel.Action action = parseAction(file, (Element) child);
+                script.actions.put(action.id, action);
+            }
+        }
+        return script;
+    }
+
+    private static ScriptModel.Action parseAction(File file, Element element)
+            throws IOException {
+        String id = element.hasAttribute(ATTR_ID) ? element.getAttribute(ATTR_ID) : null;
+        String uri = getWizardAttribute(element, ATTR_URI);
+        if (id == null) {
+            throw new IOException(file + ": WizardAction must define an id");
+        }
+        if (uri == null) {
+            throw new IOException(file + ": WizardAction " + id
+                    + " must define an intent URI");
+        }
+
+        ScriptModel.Action action = new ScriptModel.Action(id, uri);
+        String requires = getWizardAttribute(element, ATTR_REQUIRES);
+        if (requires != null) {
+            try {
+                action.requires = ActionPredicate.parse(requires);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": WizardAction " + id + ": " + e.getMessage());
+            }
+        }
+        String extras = getWizardAttribute(element, ATTR_EXTRAS);
+        if (extras != null) {
+            for (String key : extras.split(",")) {
+                key = key.trim();
+                if (!key.isEmpty()) {
+                    action.extras.add(key);
+                }
+            }
+        }
+        String timeout = getWizardAttribute(element, ATTR_TIMEOUT);
+        if (timeout != null) {
+            try {
+                action.timeoutMillis = Integer.parseInt(timeout);
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ": WizardAction " + id + ": bad timeout "
+                        + timeout);
+            }
+            if (action.timeoutMillis < 0) {
+                throw new IOException(file + ": WizardAction " + id + ": negative timeout "
+                        + timeout);
+            }
+        }
+        String sections = getWizardAttribute(element, ATTR_SECTIONS);
+        if (sections != null) {
+            for (String section : sections.split(",")) {
+                section = section.trim();
+                if (!section.isEmpty()) {
+                    action.sections.add(section);
+                }
+            }
+        }
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child instanceof Element && TAG_RESULT.equals(child.getLocalName())) {
+                Element result = (Element) child;
+                String resultCode = getWizardAttribute(result, ATTR_RESULT_CODE);
+                String target = getWizardAttribute(result, ATTR_ACTION);
+                if (resultCode == null) {
+                    action.defaultTarget = target;
+                } else {
+                    action.results.put(Integer.valueOf(resultCode), target);
+                }
+            }
+        }
+        return action;
+    }
+
+    private static String getWizardAttribute(Element element, String name) {
+        return element.hasAttributeNS(WIZARD_SCRIPT_NAMESPACE, name)
+                ? element.getAttributeNS(WIZARD_SCRIPT_NAMESPACE, name) : null;
+    }
+}
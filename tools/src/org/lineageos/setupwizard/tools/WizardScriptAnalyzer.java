@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Checks wizard scripts for structural errors and simulates the flow on device profiles.
+ *
+ * <p>Usage: {@code WizardScriptAnalyzer -m <AndroidManifest.xml> [--max-steps N]
+ * [--max-hops N] <script.xml>...}. Exits with status 1 if a script has a missing first action,
+ * a dangling result target or a cycle, or if a profile exceeds the given limits.
+ *
+ * <p>For each profile, "steps" counts the actions shown on the default path, and "worst hops"
+ * counts the actions examined, skipped ones included, on the longest path over all results.
+ * Devices with GMS are not simulated, as SetupWizardActivity hands off to the GMS wizard
+ * before loading any script.
+ */
+public class WizardScriptAnalyzer {
+
+    // Must match ResultCodes.RESULT_ACTIVITY_NOT_FOUND
+    private static final int RESULT_ACTIVITY_NOT_FOUND = 3;
+
+    private static final String TELEVISION_DIR = "raw-television";
+
+    /**
+     * Device capabilities that change which actions are available.
+     */
+    static class DeviceProfile {
+        final boolean telephony;
+        final boolean leanback;
+        final boolean biometric;
+
+        DeviceProfile(boolean telephony, boolean leanback, boolean biometric) {
+            this.telephony = telephony;
+            this.leanback = leanback;
+            this.biometric = biometric;
+        }
+
+        /**
+         * @return The {@link ActionPredicate} atoms that hold on this profile, assuming the
+         * worst case for those that are not part of it: Wi-Fi present, no ethernet, Bluetooth
+         * enabled, SIM missing, bootloader unlocked on a user build and no screen lock.
+         */
+        Set<String> getFacts() {
+            Set<String> facts = new HashSet<>();
+            facts.add("hasWifi");
+            facts.add("bootloaderUnlocked");
+            if (telephony) {
+                facts.add("hasTelephony");
+                facts.add("simMissing");
+            }
+            if (leanback) {
+                facts.add("hasLeanback");
+            }
+            if (biometric) {
+                facts.add("hasBiometric");
+            }
+            return facts;
+        }
+
+        @Override
+        public String toString() {
+            return (telephony ? "telephony" : "-") + " " + (leanback ? "leanback" : "-") + " "
+                    + (biometric ? "biometric" : "-");
+        }
+    }
+
+    private static class Simulation {
+        final List<String> steps = new ArrayList<>();
+        int worstHops;
+    }
+
+    private final String mPackageName;
+    private final Map<String, String> mHandlers;
+    private final List<String> mErrors = new ArrayList<>();
+    private final List<String> mWarnings = new ArrayList<>();
+
+    WizardScriptAnalyzer(String packageName, Map<String, String> handlers) {
+        mPackageName = packageName;
+        mHandlers = handlers;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File manifest = null;
+        int maxSteps = Integer.MAX_VALUE;
+        int maxHops = Integer.MAX_VALUE;
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-m".equals(args[i]) && i + 1 < args.length) {
+                manifest = new File(args[++i]);
+            } else if ("--max-steps".equals(args[i]) && i + 1 < args.length) {
+                maxSteps = Integer.parseInt(args[++i]);
+            } else if ("--max-hops".equals(args[i]) && i + 1 < args.length) {
+                maxHops = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+        if (manifest == null || inputs.isEmpty()) {
+            System.err.println("usage: WizardScriptAnalyzer -m <AndroidManifest.xml> "
+                    + "[--max-steps N] [--max-hops N] <script.xml>...");
+            System.exit(1);
+        }
+
+        Element root = ComponentRegistryGenerator.parseManifest(manifest).getDocumentElement();
+        String packageName = root.getAttribute("package");
+        WizardScriptAnalyzer analyzer = new WizardScriptAnalyzer(packageName,
+                ComponentRegistryGenerator.getActivityActions(root, packageName));
+
+        // Keyed by script name, then by qualified resource directory
+        Map<String, Map<String, ScriptModel>> scripts = new TreeMap<>();
+        for (File input : inputs) {
+            ScriptModel script = ScriptParser.parse(input);
+            String dir = input.getParentFile().getName();
+            scripts.computeIfAbsent(script.name, k -> new TreeMap<>()).put(dir, script);
+            analyzer.check(dir + "/" + script.name, script);
+        }
+
+        System.out.println(String.format("%-42s %-36s %5s %10s", "script", "profile", "steps",
+                "worst hops"));
+        for (DeviceProfile profile : getProfiles()) {
+            for (Map.Entry<String, Map<String, ScriptModel>> entry : scripts.entrySet()) {
+                Map<String, ScriptModel> variants = entry.getValue();
+                String dir = profile.leanback && variants.containsKey(TELEVISION_DIR)
+                        ? TELEVISION_DIR : "raw";
+                ScriptModel script = variants.get(dir);
+                if (script == null) {
+                    continue;
+                }
+                String name = dir + "/" + entry.getKey();
+                Simulation simulation = analyzer.simulate(script, profile);
+                System.out.println(String.format("%-42s %-36s %5d %10d", name, profile,
+                        simulation.steps.size(), simulation.worstHops));
+                if (simulation.steps.size() > maxSteps) {
+                    analyzer.mErrors.add(name + " [" + profile + "]: " + simulation.steps.size()
+                            + " steps exceeds " + maxSteps + ": " + simulation.steps);
+                }
+                if (simulation.worstHops > maxHops) {
+                    analyzer.mErrors.add(name + " [" + profile + "]: " + simulation.worstHops
+                            + " hops exceeds " + maxHops);
+                }
+            }
+        }
+
+        for (String warning : analyzer.mWarnings) {
+            System.err.println("warning: " + warning);
+        }
+        for (String error : analyzer.mErrors) {
+            System.err.println("error: " + error);
+        }
+        if (!analyzer.mErrors.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    static List<DeviceProfile> getProfiles() {
+        List<DeviceProfile> profiles = new ArrayList<>();
+        for (int bits = 0; bits < 8; bits++) {
+            profiles.add(new DeviceProfile((bits & 1) != 0, (bits & 2) != 0, (bits & 4) != 0));
+        }
+        return profiles;
+    }
+
+    void check(String name, ScriptModel script) {
+        if (!script.actions.containsKey(script.firstAction)) {
+            mErrors.add(name + ": firstAction " + script.firstAction + " is not declared");
+        }
+        for (ScriptModel.Action action : script.actions.values()) {
+            for (String target : getTargets(action)) {
+                if (!script.actions.containsKey(target)) {
+                    mErrors.add(name + ": " + action.id + " leads to undeclared action "
+                            + target);
+                }
+            }
+            for (String section : action.sections) {
+                if (!mHandlers.containsKey(section)) {
+                    mErrors.add(name + ": " + action.id + " has section " + section
+                            + ", which no activity handles");
+                }
+            }
+        }
+
+        Set<String> reachable = new HashSet<>();
+        List<String> cycle = findCycle(script, script.firstAction, reachable,
+                new LinkedHashSet<>());
+        if (cycle != null) {
+            mErrors.add(name + ": cycle " + String.join(" -> ", cycle));
+        }
+        for (String id : script.actions.keySet()) {
+            if (!reachable.contains(id)) {
+                mWarnings.add(name + ": " + id + " is unreachable from " + script.firstAction);
+            }
+        }
+    }
+
+    private static List<String> findCycle(ScriptModel script, String id, Set<String> visited,
+            LinkedHashSet<String> stack) {
+        ScriptModel.Action action = script.actions.get(id);
+        if (action == null) {
+            return null;
+        }
+        if (stack.contains(id)) {
+            List<String> cycle = new ArrayList<>();
+            boolean inCycle = false;
+            for (String entry : stack) {
+                inCycle |= entry.equals(id);
+                if (inCycle) {
+                    cycle.add(entry);
+                }
+            }
+            cycle.add(id);
+            return cycle;
+        }
+        if (!visited.add(id)) {
+            return null;
+        }
+        stack.add(id);
+        for (String target : getTargets(action)) {
+            List<String> cycle = findCycle(script, target, visited, stack);
+            if (cycle != null) {
+                return cycle;
+            }
+        }
+        stack.remove(id);
+        return null;
+    }
+
+    Simulation simulate(ScriptModel script, DeviceProfile profile) {
+        Simulation simulation = new Simulation();
+        Set<String> seen = new HashSet<>();
+        String id = script.firstAction;
+        while (id != null && seen.add(id)) {
+            ScriptModel.Action action = script.actions.get(id);
+            if (action == null) {
+                break;
+            }
+            if (isAvailable(action, profile)) {
+                simulation.steps.add(id);
+                id = action.defaultTarget;
+            } else {
+                id = action.getTarget(RESULT_ACTIVITY_NOT_FOUND);
+            }
+        }
+        simulation.worstHops = getWorstHops(script, profile, script.firstAction,
+                new HashMap<>(), new HashSet<>());
+        return simulation;
+    }
+
+    private int getWorstHops(ScriptModel script, DeviceProfile profile, String id,
+            Map<String, Integer> memo, Set<String> stack) {
+        ScriptModel.Action action = script.actions.get(id);
+        if (action == null || stack.contains(id)) {
+            // Cycles are reported by check()
+            return 0;
+        }
+        Integer cached = memo.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        stack.add(id);
+        int worst = 0;
+        if (isAvailable(action, profile)) {
+            for (String target : getTargets(action)) {
+                worst = Math.max(worst, getWorstHops(script, profile, target, memo, stack));
+            }
+        } else {
+            String target = action.getTarget(RESULT_ACTIVITY_NOT_FOUND);
+            if (target != null) {
+                worst = getWorstHops(script, profile, target, memo, stack);
+            }
+        }
+        stack.remove(id);
+        memo.put(id, worst + 1);
+        return worst + 1;
+    }
+
+    private boolean isAvailable(ScriptModel.Action action, DeviceProfile profile) {
+        if (action.requires != null && !action.requires.evaluate(profile.getFacts())) {
+            return false;
+        }
+        String intentAction = ComponentRegistryGenerator.getIntentAction(action.uri);
+        // Ours by name, but no activity handles it
+        return intentAction == null || !intentAction.startsWith(mPackageName + ".")
+                || mHandlers.containsKey(intentAction);
+    }
+
+    private static Set<String> getTargets(ScriptModel.Action action) {
+        Set<String> targets = new LinkedHashSet<>();
+        if (action.defaultTarget != null) {
+            targets.add(action.defaultTarget);
+        }
+        targets.addAll(action.results.values());
+        return targets;
+    }
+}
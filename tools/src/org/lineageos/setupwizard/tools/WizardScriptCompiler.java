@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles wizard script XML into the binary table read by {@code WizardScript.loadFromUri}.
+ *
+ * <p>Usage: {@code WizardScriptCompiler -o <res dir> <script.xml>...}. Each script is written to
+ * {@code <res dir>/<qualified raw dir>/<name>_compiled.bin}, so that the compiled table resolves
+ * with the same resource qualifiers as its source.
+ *
+ * <p>Layout (big endian, as written by {@link DataOutputStream}):
+ * <pre>
+ * int    magic, int version
+ * int    string count, then that many modified UTF-8 strings
+ * int    first action
+ * int    action count, then for each action:
+ *          int id, int uri, int requires, int extras, int timeout in milliseconds,
+ *          int sections, int default target, int result count,
+ *          then result count pairs of (int result code, int target)
+ * </pre>
+ * Action ids are interned first, in declaration order, so the string index of an action id is
+ * also its action index. Targets that do not name a declared action are interned after them,
+ * followed by the URIs, the {@code wizard:requires} expressions, the comma separated
+ * {@code wizard:extras} keys and the comma separated {@code wizard:sections} intent actions.
+ * A missing string is encoded as -1.
+ */
+public class WizardScriptCompiler {
+
+    // Must match WizardScript
+    static final int MAGIC = 0x53575343; // "SWSC"
+    static final int VERSION = 5;
+
+    static final String COMPILED_SUFFIX = "_compiled";
+
+    public static void main(String[] args) throws IOException {
+        File outDir = null;
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                outDir = new File(args[++i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+        if (outDir == null || inputs.isEmpty()) {
+            System.err.println("usage: WizardScriptCompiler -o <res dir> <script.xml>...");
+            System.exit(1);
+        }
+
+        for (File input : inputs) {
+            ScriptModel script = ScriptParser.parse(input);
+            File dir = new File(outDir, input.getParentFile().getName());
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+            File output = new File(dir, script.name + COMPILED_SUFFIX + ".bin");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(output)))) {
+                write(script, out);
+            }
+        }
+    }
+
+    public static void write(ScriptModel script, DataOutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        for (String id : script.actions.keySet()) {
+            strings.intern(id);
+        }
+        strings.intern(script.firstAction);
+        for (ScriptModel.Action action : script.actions.values()) {
+            strings.intern(action.defaultTarget);
+            for (String target : action.results.values()) {
+                strings.intern(target);
+            }
+        }
+        for (ScriptModel.Action action : script.actions.values()) {
+            strings.intern(action.uri);
+        }
+        for (ScriptModel.Action action : script.actions.values()) {
+            strings.intern(getRequires(action));
+        }
+        for (ScriptModel.Action action : script.actions.values()) {
+            strings.intern(getExtras(action));
+        }
+        for (ScriptModel.Action action : script.actions.values()) {
+            strings.intern(getSections(action));
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.mStrings.size());
+        for (String string : strings.mStrings) {
+            out.writeUTF(string);
+        }
+        out.writeInt(strings.intern(script.firstAction));
+        out.writeInt(script.actions.size());
+        for (ScriptModel.Action action : script.actions.values()) {
+            out.writeInt(strings.intern(action.id));
+            out.writeInt(strings.intern(action.uri));
+            out.writeInt(strings.intern(getRequires(action)));
+            out.writeInt(strings.intern(getExtras(action)));
+            out.writeInt(action.timeoutMillis);
+            out.writeInt(strings.intern(getSections(action)));
+            out.writeInt(strings.intern(action.defaultTarget));
+            out.writeInt(action.results.size());
+            for (Map.Entry<Integer, String> result : action.results.entrySet()) {
+                out.writeInt(result.getKey());
+                out.writeInt(strings.intern(result.getValue()));
+            }
+        }
+    }
+
+    private static String getRequires(ScriptModel.Action action) {
+        return action.requires != null ? action.requires.toString() : null;
+    }
+
+    private static String getExtras(ScriptModel.Action action) {
+        return action.extras.isEmpty() ? null : String.join(",", action.extras);
+    }
+
+    private static String getSections(ScriptModel.Action action) {
+        return action.sections.isEmpty() ? null : String.join(",", action.sections);
+    }
+
+    private static class StringTable {
+        private final List<String> mStrings = new ArrayList<>();
+        private final Map<String, Integer> mIndices = new HashMap<>();
+
+        int intern(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer index = mIndices.get(string);
+            if (index == null) {
+                index = mStrings.size();
+                mStrings.add(string);
+                mIndices.put(string, index);
+            }
+            return index;
+        }
+    }
+}
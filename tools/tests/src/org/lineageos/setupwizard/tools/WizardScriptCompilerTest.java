@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2026 The Calyx Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Checks the layout written by {@link WizardScriptCompiler}. That the device loader reads it
+ * back into the same graph as the XML is checked by the on-device {@code WizardScriptTest}.
+ */
+@RunWith(JUnit4.class)
+public class WizardScriptCompilerTest {
+
+    private static final String SCRIPT = ""
+            + "<WizardScript xmlns:wizard="
+            + "\"http://schemas.android.com/apk/res/com.google.android.setupwizard\"\n"
+            + "        wizard:firstAction=\"welcome\">\n"
+            + "    <WizardAction wizard:uri=\"intent:#Intent;action=a.WELCOME;end\""
+            + "            id=\"welcome\">\n"
+            + "        <result wizard:action=\"network\" />\n"
+            + "    </WizardAction>\n"
+            + "    <WizardAction wizard:uri=\"intent:#Intent;action=a.NETWORK;end\""
+            + "            wizard:requires=\"hasWifi|hasTelephony\""
+            + "            wizard:extras=\"foo, bar\" wizard:timeout=\"10000\" id=\"network\">\n"
+            + "        <result wizard:action=\"finish\" wizard:resultCode=\"11\" />\n"
+            + "        <result wizard:action=\"welcome\" wizard:resultCode=\"1\" />\n"
+            + "        <result wizard:action=\"finish\" />\n"
+            + "    </WizardAction>\n"
+            + "    <WizardAction wizard:uri=\"intent:#Intent;action=a.COMPOSITE;end\""
+            + "            wizard:sections=\"a.ONE,a.TWO\" id=\"finish\" />\n"
+            + "</WizardScript>\n";
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void writesHeader() throws IOException {
+        final DataInputStream in = compile(SCRIPT);
+        assertEquals(WizardScriptCompiler.MAGIC, in.readInt());
+        assertEquals(WizardScriptCompiler.VERSION, in.readInt());
+    }
+
+    @Test
+    public void writesActionsInDeclarationOrder() throws IOException {
+        final Table table = Table.read(compile(SCRIPT));
+        assertEquals("welcome", table.string(table.firstAction));
+        assertEquals(3, table.actions.length);
+        // Action ids are interned first, so their string index is their action index
+        for (int i = 0; i < table.actions.length; i++) {
+            assertEquals(i, table.actions[i].id);
+        }
+        assertEquals("welcome", table.string(table.actions[0].id));
+        assertEquals("network", table.string(table.actions[1].id));
+        assertEquals("finish", table.string(table.actions[2].id));
+    }
+
+    @Test
+    public void writesAttributes() throws IOException {
+        final Table table = Table.read(compile(SCRIPT));
+        final Table.Action network = table.actions[1];
+        assertEquals("intent:#Intent;action=a.NETWORK;end", table.string(network.uri));
+        assertEquals("hasWifi|hasTelephony", table.string(network.requires));
+        assertEquals("foo,bar", table.string(network.extras));
+        assertEquals(10000, network.timeoutMillis);
+        assertEquals("a.ONE,a.TWO", table.string(table.actions[2].sections));
+    }
+
+    @Test
+    public void writesMissingStringsAsMinusOne() throws IOException {
+        final Table table = Table.read(compile(SCRIPT));
+        final Table.Action welcome = table.actions[0];
+        assertEquals(-1, welcome.requires);
+        assertEquals(-1, welcome.extras);
+        assertEquals(-1, welcome.sections);
+        assertEquals(0, welcome.timeoutMillis);
+        assertNull(table.string(table.actions[2].defaultTarget));
+    }
+
+    @Test
+    public void writesResultsInAscendingOrder() throws IOException {
+        final Table table = Table.read(compile(SCRIPT));
+        final Table.Action network = table.actions[1];
+        assertEquals("finish", table.string(network.defaultTarget));
+        assertEquals(2, network.resultCodes.length);
+        assertEquals(1, network.resultCodes[0]);
+        assertEquals("welcome", table.string(network.targets[0]));
+        assertEquals(11, network.resultCodes[1]);
+        assertEquals("finish", table.string(network.targets[1]));
+    }
+
+    @Test
+    public void rejectsNegativeTimeout() throws IOException {
+        final File file = write(SCRIPT.replace("10000", "-1"));
+        assertThrows(IOException.class, () -> ScriptParser.parse(file));
+    }
+
+    @Test
+    public void rejectsMissingFirstAction() throws IOException {
+        final File file = write(SCRIPT.replace("wizard:firstAction=\"welcome\"", ""));
+        assertThrows(IOException.class, () -> ScriptParser.parse(file));
+    }
+
+    private DataInputStream compile(String xml) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WizardScriptCompiler.write(ScriptParser.parse(write(xml)), out);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private File write(String xml) throws IOException {
+        final File file = mFolder.newFile("wizard_script.xml");
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * The compiled layout, read back as is.
+     */
+    private static class Table {
+        String[] strings;
+        int firstAction;
+        Action[] actions;
+
+        static class Action {
+            int id;
+            int uri;
+            int requires;
+            int extras;
+            int timeoutMillis;
+            int sections;
+            int defaultTarget;
+            int[] resultCodes;
+            int[] targets;
+        }
+
+        static Table read(DataInputStream in) throws IOException {
+            final Table table = new Table();
+            in.readInt();
+            in.readInt();
+            table.strings = new String[in.readInt()];
+            for (int i = 0; i < table.strings.length; i++) {
+                table.strings[i] = in.readUTF();
+            }
+            table.firstAction = in.readInt();
+            table.actions = new Action[in.readInt()];
+            for (int i = 0; i < table.actions.length; i++) {
+                final Action action = new Action();
+                action.id = in.readInt();
+                action.uri = in.readInt();
+                action.requires = in.readInt();
+                action.extras = in.readInt();
+                action.timeoutMillis = in.readInt();
+                action.sections = in.readInt();
+                action.defaultTarget = in.readInt();
+                final int resultCount = in.readInt();
+                action.resultCodes = new int[resultCount];
+                action.targets = new int[resultCount];
+                for (int j = 0; j < resultCount; j++) {
+                    action.resultCodes[j] = in.readInt();
+                    action.targets[j] = in.readInt();
+                }
+                table.actions[i] = action;
+            }
+            assertEquals(-1, in.read());
+            return table;
+        }
+
+        String string(int index) {
+            return index == -1 ? null : strings[index];
+        }
+    }
+}